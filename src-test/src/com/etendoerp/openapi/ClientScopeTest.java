@@ -0,0 +1,60 @@
+package com.etendoerp.openapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.model.ad.system.Client;
+
+/**
+ * Client scope test class.
+ */
+public class ClientScopeTest {
+
+    /**
+     * Test the scope is the client of the context, and every flow for the system client.
+     */
+    @Test
+    public void testGetClientId() {
+        // Given
+        OBContext context = mock(OBContext.class);
+        Client client = mock(Client.class);
+        when(context.getCurrentClient()).thenReturn(client);
+        try (MockedStatic<OBContext> mockedContext = mockStatic(OBContext.class)) {
+            mockedContext.when(OBContext::getOBContext).thenReturn(context);
+
+            // When
+            when(client.getId()).thenReturn("A");
+            String clientId = ClientScope.getClientId();
+            when(client.getId()).thenReturn(ClientScope.SYSTEM_CLIENT_ID);
+            String systemClientId = ClientScope.getClientId();
+
+            // Then
+            assertEquals("Should be scoped to the current client", "A", clientId);
+            assertNull("System client should not be scoped", systemClientId);
+        }
+    }
+
+    /**
+     * Test a scope is only affected by the changes of its client and of the system client.
+     */
+    @Test
+    public void testIsAffectedBy() {
+        // Then
+        assertTrue("Own changes should affect the scope", ClientScope.isAffectedBy("A", List.of("A")));
+        assertFalse("Other clients should not affect the scope", ClientScope.isAffectedBy("A", List.of("B")));
+        assertTrue("System changes should affect every scope",
+                ClientScope.isAffectedBy("A", List.of(ClientScope.SYSTEM_CLIENT_ID)));
+        assertTrue("Unknown clients should affect every scope", ClientScope.isAffectedBy("A", null));
+        assertTrue("Scope with every flow should always be affected", ClientScope.isAffectedBy(null, List.of("B")));
+    }
+}
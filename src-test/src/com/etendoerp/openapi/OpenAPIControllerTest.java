@@ -1,18 +1,37 @@
 package com.etendoerp.openapi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -22,16 +41,34 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
 import org.openbravo.base.session.OBPropertiesProvider;
 import org.openbravo.base.weld.WeldUtils;
 import org.openbravo.base.weld.test.WeldBaseTest;
-
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.model.ad.access.Role;
+
+import com.etendoerp.openapi.cache.CachedSpec;
+import com.etendoerp.openapi.cache.ClusterSpecVersions;
+import com.etendoerp.openapi.cache.OpenAPISpecCache;
+import com.etendoerp.openapi.cache.SpecCacheKey;
+import com.etendoerp.openapi.cache.SpecFormat;
+import com.etendoerp.openapi.cache.SpecHistory;
+import com.etendoerp.openapi.cache.SpecProfile;
+import com.etendoerp.openapi.metrics.OpenAPIMetrics;
+import com.etendoerp.openapi.metrics.ServerTiming;
 import com.etendoerp.openapi.model.OpenAPIEndpoint;
+import com.etendoerp.openapi.model.OpenAPIEndpointRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
 
 /**
  * Open api controller test class.
@@ -61,15 +98,22 @@ public class OpenAPIControllerTest extends WeldBaseTest {
 
     private MockedStatic<OBPropertiesProvider> mockedPropertiesProvider;
     private MockedStatic<WeldUtils> mockedWeldUtils;
+    private MockedStatic<ClusterSpecVersions> mockedClusterVersions;
+    private ByteArrayOutputStream responseBody;
+    private List<OpenAPIEndpoint> endpoints;
 
     private static final String HOST_ADDRESS = "http://localhost:8080";
     private static final String TEST_URL = "http://test.com";
     private static final String OPENAPI_JSON_ERROR = "OpenAPI JSON should not be null";
+    private static final String SYSTEM_ADMIN_ROLE_ID = "0";
 
     @Before
     public void setUp() throws Exception {
         mocks = MockitoAnnotations.openMocks(this);
         controller = new OpenAPIController();
+        OpenAPISpecCache.getInstance().invalidateAll();
+        OpenAPIEndpointRegistry.getInstance().refresh();
+        SpecHistory.getInstance().clear();
 
         // Mock OBPropertiesProvider
         mockedPropertiesProvider = mockStatic(OBPropertiesProvider.class);
@@ -77,15 +121,36 @@ public class OpenAPIControllerTest extends WeldBaseTest {
         when(propertiesProvider.getOpenbravoProperties())
                 .thenReturn(mock(java.util.Properties.class));
 
-        // Mock response writer
+        // Mock response writer and output stream
         StringWriter stringWriter = new StringWriter();
         when(response.getWriter()).thenReturn(new PrintWriter(stringWriter));
+        responseBody = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                // Not needed, writes are blocking
+            }
+
+            @Override
+            public void write(int b) {
+                responseBody.write(b);
+            }
+        });
 
         // Mock WeldUtils for OpenAPIEndpoint instances
         mockedWeldUtils = mockStatic(WeldUtils.class);
-        List<OpenAPIEndpoint> endpoints = new ArrayList<>();
+        endpoints = new ArrayList<>();
         mockedWeldUtils.when(() -> WeldUtils.getInstances(OpenAPIEndpoint.class))
                 .thenReturn(endpoints);
+
+        // Mock the cluster versions, read from the database
+        mockedClusterVersions = mockStatic(ClusterSpecVersions.class);
+        mockedClusterVersions.when(ClusterSpecVersions::getInstance).thenReturn(mock(ClusterSpecVersions.class));
     }
 
     /**
@@ -98,6 +163,9 @@ public class OpenAPIControllerTest extends WeldBaseTest {
         if (mockedPropertiesProvider != null) {
             mockedPropertiesProvider.close();
         }
+        if (mockedClusterVersions != null) {
+            mockedClusterVersions.close();
+        }
         if (mockedWeldUtils != null) {
             mockedWeldUtils.close();
         }
@@ -123,7 +191,270 @@ public class OpenAPIControllerTest extends WeldBaseTest {
         // Then
         verify(response).setContentType("application/json");
         verify(response).setCharacterEncoding("UTF-8");
-        verify(response).getWriter();
+        verify(response).getOutputStream();
+        assertTrue("Response should contain the spec", responseBody.size() > 0);
+    }
+
+    /**
+     * Test do get sends YAML when it is accepted, cached apart from the JSON specification.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetYaml() throws Exception {
+        // Given
+        String json = controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+        when(request.getParameter("host")).thenReturn(TEST_URL);
+        when(request.getHeader("Accept")).thenReturn("application/yaml");
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        verify(response).setContentType("application/yaml");
+        JsonNode root = new ObjectMapper(new YAMLFactory()).readTree(responseBody.toByteArray());
+        assertEquals("YAML should contain the JSON specification", new ObjectMapper().readTree(json), root);
+    }
+
+    /**
+     * Test do get leaves out the examples and descriptions in the compact profile, cached apart from the full
+     * specification.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetCompactProfile() throws Exception {
+        // Given
+        String json = controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+        when(request.getParameter("host")).thenReturn(TEST_URL);
+        when(request.getParameter("profile")).thenReturn("compact");
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        String compact = responseBody.toString("UTF-8");
+        JsonNode root = new ObjectMapper().readTree(compact);
+        assertTrue("Compact specification should be smaller", compact.length() < json.length());
+        assertTrue("Full specification should have examples", json.contains("\"example\""));
+        assertFalse("Compact specification should not have examples", compact.contains("\"example\""));
+        assertTrue("Should keep the paths", root.path("paths").has("/sws/login"));
+        assertEquals("Should keep the servers", TEST_URL, root.path("servers").path(0).path("url").asText());
+    }
+
+    /**
+     * Test do get sends the metrics of the generation when the metrics parameter is true.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetMetrics() throws Exception {
+        // Given
+        long hits = OpenAPIMetrics.getInstance().getCacheHits();
+        controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+        controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+        when(request.getParameter("metrics")).thenReturn("true");
+        OBContext previousContext = OBContext.getOBContext();
+        OBContext.setOBContext(mockContext(SYSTEM_ADMIN_ROLE_ID));
+
+        // When
+        try {
+            controller.doGet("", request, response);
+        } finally {
+            OBContext.setOBContext(previousContext);
+        }
+
+        // Then
+        verify(response).setContentType("application/json");
+        verify(response).setHeader("Cache-Control", "no-store");
+        verify(response, never()).setHeader(eq("ETag"), any());
+        JsonNode root = new ObjectMapper().readTree(responseBody.toByteArray());
+        assertTrue("Should count the cached specification", root.path("cacheHits").asLong() > hits);
+        JsonNode generation = root.path("timers").path("phase.generation");
+        assertTrue("Should time the generation", generation.path("count").asLong() > 0);
+        assertTrue("Should time the serialization", root.path("timers").has("phase.serialization"));
+    }
+
+    /**
+     * Test do get refuses the metrics to the roles other than the System Administrator.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetMetricsRequiresSystemAdministrator() throws Exception {
+        // Given
+        when(request.getParameter("metrics")).thenReturn("true");
+        OBContext previousContext = OBContext.getOBContext();
+        OBContext.setOBContext(mockContext("100"));
+
+        // When
+        try {
+            controller.doGet("", request, response);
+        } finally {
+            OBContext.setOBContext(previousContext);
+        }
+
+        // Then
+        verify(response).sendError(eq(HttpServletResponse.SC_FORBIDDEN), any());
+        assertEquals("Should not send the metrics", 0, responseBody.size());
+    }
+
+    private static OBContext mockContext(String roleId) {
+        Role role = mock(Role.class);
+        when(role.getId()).thenReturn(roleId);
+        OBContext context = mock(OBContext.class);
+        when(context.getRole()).thenReturn(role);
+        return context;
+    }
+
+    /**
+     * Test do get sends the Server-Timing header when it is enabled.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetServerTiming() throws Exception {
+        // Given
+        Properties properties = new Properties();
+        properties.setProperty("etapi.openapi.serverTiming.enabled", "true");
+        when(propertiesProvider.getOpenbravoProperties()).thenReturn(properties);
+        when(request.getParameter("host")).thenReturn(TEST_URL);
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        ArgumentCaptor<String> header = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("Server-Timing"), header.capture());
+        assertTrue("Should report the cache status", header.getValue().startsWith("cache;desc=miss"));
+        assertTrue("Should report the serialization", header.getValue().contains("serialization;dur="));
+        assertTrue("Should report the total", header.getValue().contains("total;dur="));
+        assertNull("Should end the timing of the request", ServerTiming.getCurrent());
+    }
+
+    /**
+     * Test do get sends the gzip copy when accepted.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetGzipEncoding() throws Exception {
+        // Given
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate, br");
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        verify(response).setHeader("Content-Encoding", "gzip");
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(responseBody.toByteArray()))) {
+            JsonNode root = new ObjectMapper().readTree(gzip);
+            assertTrue("Decompressed spec should contain info section", root.has("info"));
+        }
+    }
+
+    /**
+     * Test do get answers not modified when the etag matches.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetNotModified() throws Exception {
+        // Given
+        controller.doGet("", request, response);
+        ArgumentCaptor<String> etagCaptor = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etagCaptor.capture());
+        when(request.getHeader("If-None-Match")).thenReturn(etagCaptor.getValue());
+        clearInvocations(response);
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response, never()).getOutputStream();
+    }
+
+    /**
+     * Test do head sends the headers without body.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoHeadWithoutBody() throws Exception {
+        // Given
+        when(request.getMethod()).thenReturn("HEAD");
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        verify(response).setContentLengthLong(anyLong());
+        verify(response, never()).getOutputStream();
+    }
+
+    /**
+     * Test do head sends the same content coding as the streamed get when the cache is disabled.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoHeadStreamingSendsContentEncoding() throws Exception {
+        // Given
+        when(request.getMethod()).thenReturn("HEAD");
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        OpenAPISpecCache disabledCache = mock(OpenAPISpecCache.class);
+        when(disabledCache.isEnabled()).thenReturn(false);
+
+        // When
+        try (MockedStatic<OpenAPISpecCache> mockedCache = mockStatic(OpenAPISpecCache.class)) {
+            mockedCache.when(OpenAPISpecCache::getInstance).thenReturn(disabledCache);
+            controller.doGet("", request, response);
+        }
+
+        // Then
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response, never()).getOutputStream();
+    }
+
+    /**
+     * Test the streamed specification is serialized from the model, without building its tree to deduplicate it.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetStreamingDoesNotBuildTree() throws Exception {
+        // Given
+        OpenAPISpecCache disabledCache = mock(OpenAPISpecCache.class);
+        when(disabledCache.isEnabled()).thenReturn(false);
+
+        // When
+        try (MockedStatic<OpenAPISpecCache> mockedCache = mockStatic(OpenAPISpecCache.class);
+                MockedStatic<OpenAPISerializer> mockedSerializer = mockStatic(OpenAPISerializer.class,
+                        CALLS_REAL_METHODS)) {
+            mockedCache.when(OpenAPISpecCache::getInstance).thenReturn(disabledCache);
+            controller.doGet("", request, response);
+
+            // Then
+            mockedSerializer.verify(() -> OpenAPISerializer.toTree(any()), never());
+        }
+        JsonNode root = new ObjectMapper().readTree(responseBody.toByteArray());
+        assertNotNull("Should stream the specification", root.get("paths"));
+    }
+
+    /**
+     * Test the template of a specification is cached without any host, so it can be warmed up before the first request.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testCacheOpenAPITemplate() throws Exception {
+        // When
+        controller.cacheOpenAPITemplate(null);
+
+        // Then
+        SpecCacheKey key = new SpecCacheKey(null, null, false, SpecFormat.JSON, null, SpecProfile.FULL);
+        assertNotNull("Template should be cached without host", OpenAPISpecCache.getInstance().get(key));
     }
 
     /**
@@ -187,6 +518,326 @@ public class OpenAPIControllerTest extends WeldBaseTest {
                 StringUtils.contains(json, "http://localhost:8080/etendo"));
     }
 
+    /**
+     * Test get open api json is served from cache.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetOpenAPIJsonServedFromCache() throws Exception {
+        // Given
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        endpoints.add(endpoint);
+        String firstJson = controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+
+        // When
+        String secondJson = controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+
+        // Then
+        assertEquals("Cached JSON should match the generated one", firstJson, secondJson);
+        verify(endpoint, times(1)).add(any(OpenAPI.class), isNull());
+    }
+
+    /**
+     * Test get open api json regenerated after invalidation.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetOpenAPIJsonRegeneratedAfterInvalidation() throws Exception {
+        // Given
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        when(endpoint.getSupportedTags()).thenReturn(null);
+        when(endpoint.isValid("test")).thenReturn(true);
+        endpoints.add(endpoint);
+        controller.getOpenAPIJson(HOST_ADDRESS, "test", TEST_URL);
+        OpenAPIEndpointRegistry.getInstance().invalidate(List.of("test"));
+        OpenAPISpecCache.getInstance().invalidate(List.of("test"));
+
+        // When
+        controller.getOpenAPIJson(HOST_ADDRESS, "test", TEST_URL);
+
+        // Then
+        verify(endpoint, times(2)).add(any(OpenAPI.class), eq("test"));
+    }
+
+    /**
+     * Test cached fragments are merged into specifications with another base URL.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetOpenAPIJsonReusesFragments() throws Exception {
+        // Given
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        doAnswer(invocation -> {
+            OpenAPI openAPI = invocation.getArgument(0);
+            openAPI.path("/fragment", new PathItem());
+            return null;
+        }).when(endpoint).add(any(OpenAPI.class));
+        endpoints.add(endpoint);
+        controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+
+        // When
+        String json = controller.getOpenAPIJson(HOST_ADDRESS, null, "http://other-host/etendo");
+
+        // Then
+        assertTrue("Should contain the path of the fragment", StringUtils.contains(json, "/fragment"));
+        verify(endpoint, times(1)).add(any(OpenAPI.class), isNull());
+    }
+
+    /**
+     * Test the specifications of different hosts are rendered from a single cached specification.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetOpenAPIJsonSharedBetweenHosts() throws Exception {
+        // Given
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        endpoints.add(endpoint);
+        controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+
+        // When
+        String json = controller.getOpenAPIJson(HOST_ADDRESS, null, "http://localhost:8080/etendo");
+
+        // Then
+        JsonNode server = new ObjectMapper().readTree(json).get("servers").get(0);
+        assertEquals("Should contain the requested server", "http://localhost:8080/etendo",
+                server.get("url").asText());
+        assertEquals("Should describe the requested server", "Etendo Classic Server",
+                server.get("description").asText());
+        verify(endpoint, times(1)).add(any(OpenAPI.class), isNull());
+        assertEquals("Should cache the generated specification and one rendering per host", 3,
+                OpenAPISpecCache.getInstance().size());
+    }
+
+    /**
+     * Test do get serves a single operation looked up by its operation id.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetOperationById() throws Exception {
+        // Given
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        doAnswer(invocation -> {
+            OpenAPI openAPI = invocation.getArgument(0);
+            openAPI.path("/first", new PathItem().get(new Operation().operationId("getFirst")));
+            openAPI.path("/second", new PathItem().get(new Operation().operationId("getSecond")));
+            return null;
+        }).when(endpoint).add(any(OpenAPI.class));
+        endpoints.add(endpoint);
+        controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+        when(request.getParameter("operationId")).thenReturn("getSecond");
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        JsonNode paths = new ObjectMapper().readTree(responseBody.toByteArray()).get("paths");
+        assertEquals("Only the requested operation should be served", 1, paths.size());
+        assertTrue(paths.has("/second"));
+        verify(endpoint, times(1)).add(any(OpenAPI.class), isNull());
+    }
+
+    /**
+     * Test do get serves the tag catalog without building the tag specifications.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetCatalog() throws Exception {
+        // Given
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        doAnswer(invocation -> {
+            OpenAPI openAPI = invocation.getArgument(0);
+            openAPI.path("/first", new PathItem().get(new Operation().addTagsItem("First")));
+            return null;
+        }).when(endpoint).add(any(OpenAPI.class));
+        endpoints.add(endpoint);
+        when(request.getParameter("catalog")).thenReturn("true");
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        JsonNode tags = new ObjectMapper().readTree(responseBody.toByteArray()).get("tags");
+        assertEquals("Should list the endpoint and login tags", 2, tags.size());
+        assertEquals("First", tags.get(0).get("name").asText());
+        assertEquals(1, tags.get(0).get("operationCount").asInt());
+        assertNotNull("Should include the content hash", tags.get(0).get("hash"));
+        assertEquals("Login", tags.get(1).get("name").asText());
+        verify(endpoint, never()).add(any(OpenAPI.class), eq("First"));
+        JsonNode catalog = new ObjectMapper().readTree(responseBody.toByteArray());
+        assertTrue("Should include the security schemes",
+                catalog.path("components").path("securitySchemes").has("bearerAuth"));
+        assertEquals("Should include the security requirements", 1, catalog.path("security").size());
+    }
+
+    /**
+     * Test the serialized catalog is kept until the flows change.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testCatalogKeptUntilInvalidated() throws Exception {
+        // Given
+        CachedSpec first = controller.getOpenAPICatalog(SpecFormat.JSON);
+
+        // When
+        CachedSpec second = controller.getOpenAPICatalog(SpecFormat.JSON);
+        OpenAPIEndpointRegistry.getInstance().invalidate(List.of("First"));
+        CachedSpec third = controller.getOpenAPICatalog(SpecFormat.JSON);
+
+        // Then
+        assertSame("Serialized catalog should be kept", first, second);
+        assertNotSame("Serialized catalog should be discarded with the catalog", second, third);
+    }
+
+    /**
+     * Test do get sends a JSON Patch from a previous version of the specification.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetPatchSinceVersion() throws Exception {
+        // Given
+        controller.doGet("", request, response);
+        ArgumentCaptor<String> etagCaptor = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etagCaptor.capture());
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        doAnswer(invocation -> {
+            OpenAPI openAPI = invocation.getArgument(0);
+            openAPI.path("/added", new PathItem());
+            return null;
+        }).when(endpoint).add(any(OpenAPI.class));
+        endpoints.add(endpoint);
+        OpenAPIEndpointRegistry.getInstance().refresh();
+        OpenAPISpecCache.getInstance().invalidateAll();
+        when(request.getParameter("since")).thenReturn(etagCaptor.getValue());
+        responseBody.reset();
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        verify(response).setContentType("application/json-patch+json");
+        verify(response).setHeader(eq("X-OpenAPI-ETag"), any());
+        JsonNode patch = new ObjectMapper().readTree(responseBody.toByteArray());
+        assertEquals("Patch should add the new path", "/paths/~1added", patch.get(0).get("path").asText());
+    }
+
+    /**
+     * Test do get answers not found for unknown operations.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDoGetOperationNotFound() throws Exception {
+        // Given
+        when(request.getParameter("path")).thenReturn("/unknown");
+        when(request.getParameter("method")).thenReturn("post");
+
+        // When
+        controller.doGet("", request, response);
+
+        // Then
+        verify(response).sendError(eq(HttpServletResponse.SC_NOT_FOUND), any());
+    }
+
+    /**
+     * Test endpoints are resolved through the tag index.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetOpenAPIJsonUsesTagIndex() throws Exception {
+        // Given
+        OpenAPIEndpoint indexedEndpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        when(indexedEndpoint.getSupportedTags()).thenReturn(List.of("test"));
+        OpenAPIEndpoint otherEndpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        when(otherEndpoint.getSupportedTags()).thenReturn(List.of("other"));
+        endpoints.add(indexedEndpoint);
+        endpoints.add(otherEndpoint);
+
+        // When
+        controller.getOpenAPIJson(HOST_ADDRESS, "test", TEST_URL);
+
+        // Then
+        verify(indexedEndpoint).add(any(OpenAPI.class), eq("test"));
+        verify(otherEndpoint, never()).add(any(OpenAPI.class), any());
+        verify(indexedEndpoint, never()).isValid(any());
+        verify(otherEndpoint, never()).isValid(any());
+    }
+
+    /**
+     * Test several tags are served as the union of the fragments of each tag.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetOpenAPIJsonWithSeveralTags() throws Exception {
+        // Given
+        OpenAPIEndpoint endpointA = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        when(endpointA.getSupportedTags()).thenReturn(List.of("a"));
+        doAnswer(invocation -> {
+            OpenAPI openAPI = invocation.getArgument(0);
+            openAPI.path("/a", new PathItem());
+            return null;
+        }).when(endpointA).add(any(OpenAPI.class), eq("a"));
+        OpenAPIEndpoint endpointB = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        when(endpointB.getSupportedTags()).thenReturn(List.of("b"));
+        doAnswer(invocation -> {
+            OpenAPI openAPI = invocation.getArgument(0);
+            openAPI.path("/b", new PathItem());
+            return null;
+        }).when(endpointB).add(any(OpenAPI.class), eq("b"));
+        endpoints.add(endpointA);
+        endpoints.add(endpointB);
+        controller.getOpenAPIJson(HOST_ADDRESS, "a", TEST_URL);
+
+        // When
+        String json = controller.getOpenAPIJson(HOST_ADDRESS, "b, a", TEST_URL);
+
+        // Then
+        JsonNode paths = new ObjectMapper().readTree(json).get("paths");
+        assertTrue("Should contain the path of the first tag", paths.has("/a"));
+        assertTrue("Should contain the path of the second tag", paths.has("/b"));
+        verify(endpointA, times(1)).add(any(OpenAPI.class), eq("a"));
+        verify(endpointB, times(1)).add(any(OpenAPI.class), eq("b"));
+    }
+
+    /**
+     * Test client scoped fragments are built for each client while the other fragments are shared.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetOpenAPIJsonScopedToClient() throws Exception {
+        // Given
+        OpenAPIEndpoint scopedEndpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        when(scopedEndpoint.isClientScoped()).thenReturn(true);
+        OpenAPIEndpoint sharedEndpoint = mock(OpenAPIEndpoint.class, CALLS_REAL_METHODS);
+        endpoints.add(scopedEndpoint);
+        endpoints.add(sharedEndpoint);
+        try (MockedStatic<ClientScope> mockedClientScope = mockStatic(ClientScope.class, CALLS_REAL_METHODS)) {
+            mockedClientScope.when(ClientScope::getClientId).thenReturn("A");
+            controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+            mockedClientScope.when(ClientScope::getClientId).thenReturn("B");
+
+            // When
+            controller.getOpenAPIJson(HOST_ADDRESS, null, TEST_URL);
+            OpenAPISpecCache.getInstance().invalidate(List.of("flow"), List.of("B"));
+
+            // Then
+            verify(scopedEndpoint, times(2)).add(any(OpenAPI.class), isNull());
+            verify(sharedEndpoint, times(1)).add(any(OpenAPI.class), isNull());
+            assertEquals("Specification of the other client and its rendering should be kept", 2,
+                    OpenAPISpecCache.getInstance().size());
+        }
+    }
+
     /**
      * Test security schemes.
      *
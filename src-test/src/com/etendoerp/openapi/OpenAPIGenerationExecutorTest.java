@@ -0,0 +1,133 @@
+package com.etendoerp.openapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.openbravo.dal.core.OBContext;
+
+/**
+ * Open api generation executor test class.
+ */
+public class OpenAPIGenerationExecutorTest {
+
+    /**
+     * Test results are returned in the order of the tasks.
+     */
+    @Test
+    public void testInvokeAllKeepsTaskOrder() {
+        // Given
+        List<Supplier<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int value = i;
+            tasks.add(() -> {
+                sleep(20 - value);
+                return value;
+            });
+        }
+
+        // When
+        List<Integer> results = OpenAPIGenerationExecutor.invokeAll(tasks);
+
+        // Then
+        assertEquals(20, results.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Results should keep the order of the tasks", Integer.valueOf(i), results.get(i));
+        }
+    }
+
+    /**
+     * Test a single task runs in the calling thread.
+     */
+    @Test
+    public void testInvokeAllSingleTaskRunsInline() {
+        // Given
+        Thread caller = Thread.currentThread();
+        List<Supplier<Thread>> tasks = Collections.singletonList(Thread::currentThread);
+
+        // When
+        List<Thread> results = OpenAPIGenerationExecutor.invokeAll(tasks);
+
+        // Then
+        assertEquals("Single task should run in the calling thread", caller, results.get(0));
+    }
+
+    /**
+     * Test the tasks given by an inline task run in the calling thread.
+     */
+    @Test
+    public void testRunInlineRunsTasksInCallingThread() {
+        // Given
+        Thread caller = Thread.currentThread();
+        List<Supplier<Thread>> tasks = new ArrayList<>();
+        tasks.add(Thread::currentThread);
+        tasks.add(Thread::currentThread);
+
+        // When
+        List<Thread> results = OpenAPIGenerationExecutor.runInline(() -> OpenAPIGenerationExecutor.invokeAll(tasks));
+
+        // Then
+        assertEquals("Tasks should run in the calling thread", Collections.nCopies(2, caller), results);
+    }
+
+    /**
+     * Test a task run in a thread with a context restores that context when it ends.
+     */
+    @Test
+    public void testRunInContextRestoresPreviousContext() {
+        // Given
+        OBContext previous = mock(OBContext.class);
+        OBContext context = mock(OBContext.class);
+        OBContext.setOBContext(previous);
+
+        try {
+            // When
+            OBContext used = OpenAPIGenerationExecutor.runInContext(context, OBContext::getOBContext);
+
+            // Then
+            assertSame("Task should run with the given context", context, used);
+            assertSame("Previous context should be restored", previous, OBContext.getOBContext());
+        } finally {
+            OBContext.setOBContext((OBContext) null);
+        }
+    }
+
+    /**
+     * Test the exception of a failed task is rethrown.
+     */
+    @Test
+    public void testInvokeAllRethrowsTaskException() {
+        // Given
+        List<Supplier<String>> tasks = new ArrayList<>();
+        tasks.add(() -> "ok");
+        tasks.add(() -> {
+            throw new IllegalStateException("Task failed");
+        });
+
+        // When
+        try {
+            OpenAPIGenerationExecutor.invokeAll(tasks);
+            fail("Should rethrow the exception of the task");
+        } catch (IllegalStateException e) {
+            // Then
+            assertTrue("Should keep the task message", e.getMessage().contains("Task failed")
+                    || (e.getCause() != null && e.getCause().getMessage().contains("Task failed")));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
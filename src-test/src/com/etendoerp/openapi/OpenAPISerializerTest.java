@@ -0,0 +1,84 @@
+package com.etendoerp.openapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.etendoerp.openapi.cache.SpecFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+
+/**
+ * OpenAPI serializer test class.
+ */
+public class OpenAPISerializerTest {
+
+    /**
+     * Test the writer is shared between calls.
+     */
+    @Test
+    public void testWriterIsShared() {
+        assertSame("Writer should be built once", OpenAPISerializer.getWriter(), OpenAPISerializer.getWriter());
+    }
+
+    /**
+     * Test serialization of the swagger model types.
+     *
+     * @throws IOException the exception
+     */
+    @Test
+    public void testWriteSwaggerModels() throws IOException {
+        // Given
+        OpenAPI openAPI = new OpenAPI().components(new Components()
+                .addSecuritySchemes("basicAuth", new SecurityScheme().type(SecurityScheme.Type.HTTP).scheme("basic"))
+                .addSchemas("Name", new Schema<String>().type("string").example("admin")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        OpenAPISerializer.write(openAPI, out);
+
+        // Then
+        JsonNode components = new ObjectMapper().readTree(out.toByteArray()).get("components");
+        assertEquals("Security scheme type should be lowercase", "http",
+                components.get("securitySchemes").get("basicAuth").get("type").asText());
+        JsonNode schema = components.get("schemas").get("Name");
+        assertEquals("Example should be written", "admin", schema.get("example").asText());
+        assertFalse("Example flag should not be written", schema.has("exampleSetFlag"));
+        assertFalse("Null values should not be written", schema.has("format"));
+    }
+
+    /**
+     * Test the YAML serialization contains the same document as the JSON one.
+     *
+     * @throws IOException the exception
+     */
+    @Test
+    public void testWriteYaml() throws IOException {
+        // Given
+        OpenAPI openAPI = new OpenAPI().components(new Components()
+                .addSecuritySchemes("basicAuth", new SecurityScheme().type(SecurityScheme.Type.HTTP).scheme("basic"))
+                .addSchemas("Name", new Schema<String>().type("string").example("admin")));
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        ByteArrayOutputStream yaml = new ByteArrayOutputStream();
+
+        // When
+        OpenAPISerializer.write(openAPI, SpecFormat.JSON, json);
+        OpenAPISerializer.write(openAPI, SpecFormat.YAML, yaml);
+
+        // Then
+        JsonNode fromJson = new ObjectMapper().readTree(json.toByteArray());
+        JsonNode fromYaml = new ObjectMapper(new YAMLFactory()).readTree(yaml.toByteArray());
+        assertEquals("YAML should contain the same document", fromJson, fromYaml);
+    }
+}
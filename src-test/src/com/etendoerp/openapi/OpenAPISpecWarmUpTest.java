@@ -0,0 +1,74 @@
+package com.etendoerp.openapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.openbravo.base.weld.WeldUtils;
+import org.openbravo.dal.service.OBCriteria;
+import org.openbravo.dal.service.OBDal;
+
+import com.etendoerp.openapi.data.OpenApiFlow;
+import com.etendoerp.openapi.model.OpenAPIEndpoint;
+import com.etendoerp.openapi.model.OpenAPIEndpointRegistry;
+
+/**
+ * Open api spec warm up test class.
+ */
+public class OpenAPISpecWarmUpTest {
+
+    private MockedStatic<OBDal> mockedOBDal;
+    private MockedStatic<WeldUtils> mockedWeldUtils;
+
+    @Before
+    public void setUp() {
+        OpenAPIEndpointRegistry.getInstance().refresh();
+        mockedOBDal = mockStatic(OBDal.class);
+        mockedWeldUtils = mockStatic(WeldUtils.class);
+    }
+
+    @After
+    public void tearDown() {
+        mockedOBDal.close();
+        mockedWeldUtils.close();
+        OpenAPIEndpointRegistry.getInstance().refresh();
+    }
+
+    /**
+     * Test warm up tags include the full specification, the flows and the built-in tags.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetWarmUpTags() {
+        // Given
+        OBDal obDal = mock(OBDal.class);
+        OBCriteria<OpenApiFlow> criteria = mock(OBCriteria.class);
+        OpenApiFlow flow = mock(OpenApiFlow.class);
+        when(flow.getName()).thenReturn("Sales");
+        mockedOBDal.when(OBDal::getInstance).thenReturn(obDal);
+        when(obDal.createCriteria(OpenApiFlow.class)).thenReturn(criteria);
+        when(criteria.list()).thenReturn(Collections.singletonList(flow));
+        OpenAPIEndpoint endpoint = mock(OpenAPIEndpoint.class);
+        when(endpoint.getSupportedTags()).thenReturn(Arrays.asList("Window Settings", "Jobs and Actions"));
+        mockedWeldUtils.when(() -> WeldUtils.getInstances(OpenAPIEndpoint.class))
+                .thenReturn(Collections.singletonList(endpoint));
+
+        // When
+        List<String> tags = new OpenAPISpecWarmUp().getWarmUpTags();
+
+        // Then
+        assertNull("Full specification should be warmed up first", tags.get(0));
+        assertEquals(Arrays.asList(null, OpenAPIDefaultRequest.DEFAULT_TAG, "Jobs and Actions", "Sales",
+                "Window Settings"), tags);
+    }
+}
@@ -0,0 +1,83 @@
+package com.etendoerp.openapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Requested tags test class.
+ */
+public class RequestedTagsTest {
+
+    /**
+     * Test the tags are trimmed, deduplicated and sorted.
+     */
+    @Test
+    public void testNormalize() {
+        // When
+        String normalized = RequestedTags.normalize(" Sales ,Default,,Sales");
+
+        // Then
+        assertEquals("Tags should be sorted and deduplicated", "Default,Sales", normalized);
+    }
+
+    /**
+     * Test blank tag lists request the full specification.
+     */
+    @Test
+    public void testBlankTagsRequestFullSpec() {
+        // When
+        Set<String> tags = RequestedTags.split(" , ");
+
+        // Then
+        assertTrue("No tag should be requested", tags.isEmpty());
+        assertNull("Normalized tag should be null", RequestedTags.normalize(null));
+        assertEquals("Single tag should be kept", List.of("Sales"), List.copyOf(RequestedTags.split("Sales")));
+    }
+
+    /**
+     * Test a parameter that is a known tag as a whole is not split, even if it contains commas.
+     */
+    @Test
+    public void testKnownTagWithCommasIsNotSplit() {
+        // Given
+        Set<String> knownTags = Set.of("Sales, Purchases");
+
+        // When
+        String normalized = RequestedTags.normalize(" Sales, Purchases ", knownTags::contains);
+        Set<String> tags = RequestedTags.split(normalized);
+
+        // Then
+        assertEquals("Known tag should be escaped", "Sales\\, Purchases", normalized);
+        assertEquals("Known tag should be kept whole", Set.of("Sales, Purchases"), tags);
+        assertEquals("Unknown tags should be split", "Purchases,Sales",
+            RequestedTags.normalize("Sales, Purchases", t -> false));
+        assertEquals("Known tag should not be split", Set.of("Sales, Purchases"),
+            RequestedTags.split("Sales, Purchases", knownTags::contains));
+        assertEquals("Known tags should only be checked for lists", Set.of("Sales"),
+            RequestedTags.split("Sales", t -> {
+                throw new AssertionError("Should not check a single tag");
+            }));
+    }
+
+    /**
+     * Test joined tags are split back into the same tags.
+     */
+    @Test
+    public void testJoinEscapesSeparators() {
+        // Given
+        Set<String> tags = Set.of("A,B", "C\\D", "E");
+
+        // When
+        String joined = RequestedTags.join(tags);
+
+        // Then
+        assertEquals("Tags should be split back", tags, RequestedTags.split(joined));
+        assertNull("No tags should join to null", RequestedTags.join(Set.of()));
+    }
+}
@@ -0,0 +1,238 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+import org.openbravo.dal.service.OBDal;
+import org.openbravo.service.db.DalConnectionProvider;
+
+/**
+ * Cluster spec versions test class.
+ */
+public class ClusterSpecVersionsTest {
+
+    private static final String BASE_URL = "http://localhost:8080/etendo";
+    private static final String FLOW_A = "FlowA";
+    private static final String FLOW_B = "FlowB";
+
+    private MockedStatic<OBDal> mockedOBDal;
+    private MockedConstruction<DalConnectionProvider> mockedProvider;
+    private Connection connection;
+    private Connection readConnection;
+
+    /**
+     * Sets up.
+     */
+    @Before
+    public void setUp() {
+        OBDal obDal = mock(OBDal.class);
+        connection = mock(Connection.class);
+        mockedOBDal = mockStatic(OBDal.class);
+        mockedOBDal.when(OBDal::getInstance).thenReturn(obDal);
+        when(obDal.getConnection(anyBoolean())).thenReturn(connection);
+        readConnection = mock(Connection.class);
+        mockedProvider = mockConstruction(DalConnectionProvider.class,
+                (provider, context) -> when(provider.getTransactionConnection()).thenReturn(readConnection));
+        OpenAPISpecCache.getInstance().invalidateAll();
+    }
+
+    /**
+     * Tear down.
+     */
+    @After
+    public void tearDown() {
+        mockedOBDal.close();
+        mockedProvider.close();
+        OpenAPISpecCache.getInstance().invalidateAll();
+    }
+
+    /**
+     * Test only the tags whose version changed since the previous read are invalidated.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testPollInvalidatesChangedTags() throws Exception {
+        // Given
+        ClusterSpecVersions versions = new ClusterSpecVersions(1000);
+        mockVersions(new Object[][] { { FLOW_A, 1L }, { FLOW_B, 1L } });
+        versions.poll();
+        OpenAPISpecCache cache = OpenAPISpecCache.getInstance();
+        SpecCacheKey keyA = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        SpecCacheKey keyB = new SpecCacheKey(FLOW_B, BASE_URL, false);
+        cache.put(keyA, new CachedSpec("{}"), cache.getGeneration());
+        cache.put(keyB, new CachedSpec("{}"), cache.getGeneration());
+        mockVersions(new Object[][] { { FLOW_A, 2L }, { FLOW_B, 1L } });
+
+        // When
+        versions.poll();
+
+        // Then
+        assertNull("Changed tag should be invalidated", cache.get(keyA));
+        assertNotNull("Unchanged tag should be kept", cache.get(keyB));
+    }
+
+    /**
+     * Test the first read only records the versions.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testFirstPollKeepsCache() throws Exception {
+        // Given
+        ClusterSpecVersions versions = new ClusterSpecVersions(1000);
+        OpenAPISpecCache cache = OpenAPISpecCache.getInstance();
+        SpecCacheKey keyA = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        cache.put(keyA, new CachedSpec("{}"), cache.getGeneration());
+        mockVersions(new Object[][] { { FLOW_A, 3L } });
+
+        // When
+        versions.poll();
+
+        // Then
+        assertNotNull("Nothing should be invalidated on the first read", cache.get(keyA));
+    }
+
+    /**
+     * Test the versions are not read again before the poll interval elapses.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testPollIfDueRespectsInterval() throws Exception {
+        // Given
+        ClusterSpecVersions versions = new ClusterSpecVersions(60000);
+        mockVersions(new Object[][] {});
+
+        // When
+        versions.pollIfDue();
+        versions.pollIfDue();
+
+        // Then
+        verify(readConnection, times(1)).prepareStatement(ClusterSpecVersions.SELECT_SQL);
+    }
+
+    /**
+     * Test the version row of a tag is created when it does not exist.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testBumpInsertsMissingTag() throws Exception {
+        // Given
+        PreparedStatement update = mock(PreparedStatement.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.prepareStatement(ClusterSpecVersions.UPDATE_SQL)).thenReturn(update);
+        when(connection.prepareStatement(ClusterSpecVersions.INSERT_SQL)).thenReturn(insert);
+        when(update.executeUpdate()).thenReturn(1, 0);
+
+        // When
+        new ClusterSpecVersions(1000).bump(List.of(FLOW_A, FLOW_B));
+
+        // Then
+        verify(update, times(2)).executeUpdate();
+        verify(insert, times(1)).setString(1, FLOW_B);
+        verify(insert, never()).setString(1, FLOW_A);
+    }
+
+    /**
+     * Test a tag inserted by another transaction is updated and the failed insert is rolled back on its own.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testBumpUpdatesTagInsertedConcurrently() throws Exception {
+        // Given
+        PreparedStatement update = mock(PreparedStatement.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        Savepoint savepoint = mock(Savepoint.class);
+        when(connection.setSavepoint()).thenReturn(savepoint);
+        when(connection.prepareStatement(ClusterSpecVersions.UPDATE_SQL)).thenReturn(update);
+        when(connection.prepareStatement(ClusterSpecVersions.INSERT_SQL)).thenReturn(insert);
+        when(update.executeUpdate()).thenReturn(0, 1);
+        when(insert.executeUpdate()).thenThrow(new SQLException("duplicate key"));
+
+        // When
+        new ClusterSpecVersions(1000).bump(List.of(FLOW_A));
+
+        // Then
+        verify(update, times(2)).executeUpdate();
+        verify(connection, times(1)).rollback(savepoint);
+    }
+
+    /**
+     * Test the versions are read in a transaction of their own, which is rolled back without touching the transaction
+     * of the caller.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testPollReadsInOwnTransaction() throws Exception {
+        // Given
+        ClusterSpecVersions versions = new ClusterSpecVersions(1000);
+        mockVersions(new Object[][] { { FLOW_A, 1L } });
+
+        // When
+        versions.poll();
+
+        // Then
+        verify(mockedProvider.constructed().get(0), times(1)).releaseRollbackConnection(readConnection);
+        verify(connection, never()).prepareStatement(ClusterSpecVersions.SELECT_SQL);
+    }
+
+    /**
+     * Test a failed read releases its connection and is retried on the next poll.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testPollRetriesAfterFailure() throws Exception {
+        // Given
+        ClusterSpecVersions versions = new ClusterSpecVersions(1000);
+        PreparedStatement select = mock(PreparedStatement.class);
+        when(select.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(readConnection.prepareStatement(ClusterSpecVersions.SELECT_SQL))
+                .thenThrow(new SQLException("no table"))
+                .thenReturn(select);
+        versions.poll();
+
+        // When
+        versions.poll();
+
+        // Then
+        verify(mockedProvider.constructed().get(0), times(1)).releaseRollbackConnection(readConnection);
+        verify(readConnection, times(2)).prepareStatement(ClusterSpecVersions.SELECT_SQL);
+        verify(select, times(1)).executeQuery();
+    }
+
+    private void mockVersions(Object[][] rows) throws Exception {
+        PreparedStatement select = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(readConnection.prepareStatement(ClusterSpecVersions.SELECT_SQL)).thenReturn(select);
+        when(select.executeQuery()).thenReturn(rs);
+        int[] row = { -1 };
+        when(rs.next()).thenAnswer(invocation -> ++row[0] < rows.length);
+        when(rs.getString(1)).thenAnswer(invocation -> rows[row[0]][0]);
+        when(rs.getLong(2)).thenAnswer(invocation -> rows[row[0]][1]);
+    }
+}
@@ -0,0 +1,73 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Json patch test class.
+ */
+public class JsonPatchTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Test equal documents produce an empty patch.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDiffEqual() throws Exception {
+        // Given
+        JsonNode document = mapper.readTree("{\"a\":1,\"b\":[1,2]}");
+
+        // Then
+        assertEquals(0, JsonPatch.diff(document, document.deepCopy()).size());
+    }
+
+    /**
+     * Test object members are added, removed and replaced with escaped paths.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDiffObjects() throws Exception {
+        // Given
+        JsonNode source = mapper.readTree("{\"paths\":{\"/a\":{\"summary\":\"A\"},\"/b\":{}}}");
+        JsonNode target = mapper.readTree("{\"paths\":{\"/a\":{\"summary\":\"A2\"},\"/c~\":{}}}");
+
+        // When
+        JsonNode patch = JsonPatch.diff(source, target);
+
+        // Then
+        assertEquals(mapper.readTree("["
+                + "{\"op\":\"remove\",\"path\":\"/paths/~1b\"},"
+                + "{\"op\":\"replace\",\"path\":\"/paths/~1a/summary\",\"value\":\"A2\"},"
+                + "{\"op\":\"add\",\"path\":\"/paths/~1c~0\",\"value\":{}}]"), patch);
+    }
+
+    /**
+     * Test array elements are compared by position and added or removed at the end.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDiffArrays() throws Exception {
+        // Given
+        JsonNode source = mapper.readTree("{\"tags\":[\"a\",\"b\",\"c\"],\"list\":[1]}");
+        JsonNode target = mapper.readTree("{\"tags\":[\"a\"],\"list\":[2,3]}");
+
+        // When
+        JsonNode patch = JsonPatch.diff(source, target);
+
+        // Then
+        assertEquals(mapper.readTree("["
+                + "{\"op\":\"remove\",\"path\":\"/tags/2\"},"
+                + "{\"op\":\"remove\",\"path\":\"/tags/1\"},"
+                + "{\"op\":\"replace\",\"path\":\"/list/0\",\"value\":2},"
+                + "{\"op\":\"add\",\"path\":\"/list/-\",\"value\":3}]"), patch);
+    }
+}
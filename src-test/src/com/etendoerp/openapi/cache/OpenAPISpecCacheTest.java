@@ -0,0 +1,396 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.etendoerp.openapi.ClientScope;
+import com.etendoerp.openapi.metrics.OpenAPIMetrics;
+
+/**
+ * OpenAPI spec cache test class.
+ */
+public class OpenAPISpecCacheTest {
+
+    private static final String BASE_URL = "http://localhost:8080/etendo";
+    private static final String FLOW_A = "FlowA";
+    private static final String FLOW_B = "FlowB";
+    private static final String CLIENT_A = "A";
+    private static final String CLIENT_B = "B";
+
+    private OpenAPISpecCache cache;
+
+    /**
+     * Sets up.
+     */
+    @Before
+    public void setUp() {
+        cache = new OpenAPISpecCache(100);
+    }
+
+    /**
+     * Test put and get.
+     */
+    @Test
+    public void testPutAndGet() {
+        // Given
+        SpecCacheKey key = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        CachedSpec spec = new CachedSpec("{}");
+
+        // When
+        boolean cached = cache.put(key, spec, cache.getGeneration());
+
+        // Then
+        assertTrue("Spec should be cached", cached);
+        assertSame("Cached spec should be returned", spec, cache.get(new SpecCacheKey(FLOW_A, BASE_URL, false)));
+        assertNull("Other keys should not be cached", cache.get(new SpecCacheKey(FLOW_A, BASE_URL, true)));
+    }
+
+    /**
+     * Test least recently used entries are evicted when the size is exceeded.
+     */
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        // Given
+        SpecCacheKey keyA = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        SpecCacheKey keyB = new SpecCacheKey(FLOW_B, BASE_URL, false);
+        SpecCacheKey keyFull = new SpecCacheKey(null, BASE_URL, false);
+        long weight = new CachedSpec(new byte[40]).getWeight();
+        cache = new OpenAPISpecCache(2 * weight);
+        cache.put(keyA, new CachedSpec(new byte[40]), cache.getGeneration());
+        cache.put(keyB, new CachedSpec(new byte[40]), cache.getGeneration());
+        cache.get(keyA);
+
+        // When
+        cache.put(keyFull, new CachedSpec(new byte[40]), cache.getGeneration());
+
+        // Then
+        assertNotNull("Recently used entry should be kept", cache.get(keyA));
+        assertNull("Least recently used entry should be evicted", cache.get(keyB));
+        assertNotNull("New entry should be cached", cache.get(keyFull));
+        assertEquals("Size should account for the cached entries", 2 * weight, cache.getCurrentSize());
+    }
+
+    /**
+     * Test specs bigger than the cache are not cached.
+     */
+    @Test
+    public void testSpecBiggerThanCacheNotCached() {
+        // When
+        boolean cached = cache.put(new SpecCacheKey(FLOW_A, BASE_URL, false), new CachedSpec(new byte[101]),
+                cache.getGeneration());
+
+        // Then
+        assertFalse("Spec should not be cached", cached);
+        assertEquals("Cache should be empty", 0, cache.size());
+    }
+
+    /**
+     * Test invalidation removes the changed tags and the full spec only.
+     */
+    @Test
+    public void testInvalidateRemovesAffectedTags() {
+        // Given
+        SpecCacheKey keyA = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        SpecCacheKey keyB = new SpecCacheKey(FLOW_B, BASE_URL, false);
+        SpecCacheKey keyFull = new SpecCacheKey(null, BASE_URL, false);
+        cache.put(keyA, new CachedSpec("{}"), cache.getGeneration());
+        cache.put(keyB, new CachedSpec("{}"), cache.getGeneration());
+        cache.put(keyFull, new CachedSpec("{}"), cache.getGeneration());
+
+        // When
+        cache.invalidate(List.of(FLOW_A));
+
+        // Then
+        assertNull("Changed tag should be invalidated", cache.get(keyA));
+        assertNull("Full spec should be invalidated", cache.get(keyFull));
+        assertNotNull("Unchanged tag should be kept", cache.get(keyB));
+    }
+
+    /**
+     * Test a change in the flows of a client keeps the specifications of the other clients.
+     */
+    @Test
+    public void testInvalidateKeepsOtherClients() {
+        // Given
+        SpecCacheKey keyA = new SpecCacheKey(null, BASE_URL, false, SpecFormat.JSON, CLIENT_A);
+        SpecCacheKey keyB = new SpecCacheKey(null, BASE_URL, false, SpecFormat.JSON, CLIENT_B);
+        SpecCacheKey keyAll = new SpecCacheKey(null, BASE_URL, false);
+        cache.put(keyA, new CachedSpec("{}"), cache.getGeneration());
+        cache.put(keyB, new CachedSpec("{}"), cache.getGeneration());
+        cache.put(keyAll, new CachedSpec("{}"), cache.getGeneration());
+
+        // When
+        cache.invalidate(List.of(FLOW_A), List.of(CLIENT_B));
+
+        // Then
+        assertNotNull("Specification of another client should be kept", cache.get(keyA));
+        assertNull("Specification of the changed client should be invalidated", cache.get(keyB));
+        assertNull("Specification with every client should be invalidated", cache.get(keyAll));
+    }
+
+    /**
+     * Test a change in the system flows invalidates the specifications of every client.
+     */
+    @Test
+    public void testInvalidateSystemFlowsAffectsEveryClient() {
+        // Given
+        SpecCacheKey keyA = new SpecCacheKey(FLOW_A, BASE_URL, false, SpecFormat.JSON, CLIENT_A);
+        cache.put(keyA, new CachedSpec("{}"), cache.getGeneration());
+
+        // When
+        cache.invalidate(List.of(FLOW_A), List.of(ClientScope.SYSTEM_CLIENT_ID));
+
+        // Then
+        assertNull("System flow changes should invalidate every client", cache.get(keyA));
+    }
+
+    /**
+     * Test a specification of several tags is shared by any order of the tags and invalidated by any of them.
+     */
+    @Test
+    public void testInvalidateRemovesMultiTagSpec() {
+        // Given
+        SpecCacheKey keyAB = new SpecCacheKey(FLOW_B + ", " + FLOW_A, BASE_URL, false);
+        SpecCacheKey keyB = new SpecCacheKey(FLOW_B, BASE_URL, false);
+        cache.put(keyAB, new CachedSpec("{}"), cache.getGeneration());
+        cache.put(keyB, new CachedSpec("{}"), cache.getGeneration());
+
+        // When
+        CachedSpec reordered = cache.get(new SpecCacheKey(FLOW_A + "," + FLOW_B, BASE_URL, false));
+        cache.invalidate(List.of(FLOW_A));
+
+        // Then
+        assertNotNull("Tags in another order should share the specification", reordered);
+        assertNull("Specification including the changed tag should be invalidated", cache.get(keyAB));
+        assertNotNull("Unchanged tag should be kept", cache.get(keyB));
+    }
+
+    /**
+     * Test specs generated while an invalidation happened are discarded.
+     */
+    @Test
+    public void testOutdatedSpecNotCached() {
+        // Given
+        long generation = cache.getGeneration();
+        cache.invalidate(List.of(FLOW_A));
+
+        // When
+        boolean cached = cache.put(new SpecCacheKey(FLOW_B, BASE_URL, false), new CachedSpec("{}"), generation);
+
+        // Then
+        assertFalse("Outdated spec should not be cached", cached);
+    }
+
+    /**
+     * Test concurrent requests of the same specification share one generation.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testConcurrentGetGeneratesOnce() throws Exception {
+        // Given
+        SpecCacheKey key = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        AtomicInteger generations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<CachedSpec>> results = new ArrayList<>();
+
+        // When
+        try {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get(key, () -> {
+                    generations.incrementAndGet();
+                    started.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return new CachedSpec("{}");
+                })));
+            }
+            assertTrue("Generation should start", started.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            release.countDown();
+
+            // Then
+            CachedSpec first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<CachedSpec> result : results) {
+                assertSame("Every caller should receive the same specification", first,
+                        result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals("Specification should be generated once", 1, generations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test the failure of a generation is reported and not cached.
+     */
+    @Test
+    public void testGetReportsGenerationFailure() {
+        // Given
+        SpecCacheKey key = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        IllegalStateException failure = new IllegalStateException("Generation failed");
+
+        // When
+        try {
+            cache.get(key, () -> {
+                throw failure;
+            });
+            fail("Should report the generation failure");
+        } catch (ExecutionException e) {
+            // Then
+            assertSame("Cause should be the generator exception", failure, e.getCause());
+            assertNull("Nothing should be cached", cache.get(key));
+        }
+    }
+
+    /**
+     * Test a stale specification is served while it is regenerated in the background.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testStaleServedWhileRevalidating() throws Exception {
+        // Given
+        List<Runnable> background = new ArrayList<>();
+        OpenAPISpecCache staleCache = new OpenAPISpecCache(100, true, 0, background::add);
+        SpecCacheKey key = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        CachedSpec previous = new CachedSpec("{}");
+        CachedSpec regenerated = new CachedSpec("{\"a\":1}");
+        staleCache.put(key, previous, staleCache.getGeneration());
+        staleCache.invalidate(List.of(FLOW_A));
+
+        // When
+        CachedSpec served = staleCache.get(key, () -> regenerated);
+
+        // Then
+        assertSame("Stale specification should be served", previous, served);
+        assertNull("Stale specification should not be returned as fresh", staleCache.get(key));
+        assertEquals("Regeneration should be scheduled", 1, background.size());
+        background.get(0).run();
+        assertSame("Regenerated specification should be cached", regenerated, staleCache.get(key));
+    }
+
+    /**
+     * Test a regeneration finished within the time budget is served instead of the stale specification.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testRegeneratedServedWithinTimeBudget() throws Exception {
+        // Given
+        OpenAPISpecCache staleCache = new OpenAPISpecCache(100, true, 5000, Runnable::run);
+        SpecCacheKey key = new SpecCacheKey(null, BASE_URL, false);
+        CachedSpec regenerated = new CachedSpec("{\"a\":1}");
+        staleCache.put(key, new CachedSpec("{}"), staleCache.getGeneration());
+        staleCache.invalidate(List.of(FLOW_B));
+
+        // When
+        CachedSpec served = staleCache.get(key, () -> regenerated);
+
+        // Then
+        assertSame("Regenerated specification should be served", regenerated, served);
+    }
+
+    /**
+     * Test the stale specification is served when the regeneration fails.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testStaleServedWhenRegenerationFails() throws Exception {
+        // Given
+        OpenAPISpecCache staleCache = new OpenAPISpecCache(100, true, 5000, Runnable::run);
+        SpecCacheKey key = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        CachedSpec previous = new CachedSpec("{}");
+        staleCache.put(key, previous, staleCache.getGeneration());
+        staleCache.invalidate(List.of(FLOW_A));
+
+        // When
+        CachedSpec served = staleCache.get(key, () -> {
+            throw new IllegalStateException("Generation failed");
+        });
+
+        // Then
+        assertSame("Stale specification should be served", previous, served);
+    }
+
+    /**
+     * Test a failed regeneration is not retried until the retry delay elapses and the stale specification is counted
+     * as a stale hit.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testFailedRegenerationIsNotRetried() throws Exception {
+        // Given
+        OpenAPISpecCache staleCache = new OpenAPISpecCache(100, true, 0, Runnable::run);
+        SpecCacheKey key = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        CachedSpec previous = new CachedSpec("{}");
+        AtomicInteger generations = new AtomicInteger();
+        staleCache.put(key, previous, staleCache.getGeneration());
+        staleCache.invalidate(List.of(FLOW_A));
+        long staleHits = OpenAPIMetrics.getInstance().getStaleHits();
+        long misses = OpenAPIMetrics.getInstance().getCacheMisses();
+
+        // When
+        staleCache.get(key, () -> {
+            generations.incrementAndGet();
+            throw new IllegalStateException("Generation failed");
+        });
+        CachedSpec served = staleCache.get(key, () -> {
+            generations.incrementAndGet();
+            return new CachedSpec("{\"a\":1}");
+        });
+
+        // Then
+        assertSame("Stale specification should be served", previous, served);
+        assertEquals("Regeneration should not be retried before the delay", 1, generations.get());
+        assertEquals("Should count the stale hits", staleHits + 2, OpenAPIMetrics.getInstance().getStaleHits());
+        assertEquals("Should not count the stale hits as misses", misses,
+            OpenAPIMetrics.getInstance().getCacheMisses());
+    }
+
+    /**
+     * Test a new invalidation retries a failed regeneration right away.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testInvalidationRetriesFailedRegeneration() throws Exception {
+        // Given
+        OpenAPISpecCache staleCache = new OpenAPISpecCache(100, true, 0, Runnable::run);
+        SpecCacheKey key = new SpecCacheKey(FLOW_A, BASE_URL, false);
+        CachedSpec regenerated = new CachedSpec("{\"a\":1}");
+        staleCache.put(key, new CachedSpec("{}"), staleCache.getGeneration());
+        staleCache.invalidate(List.of(FLOW_A));
+        staleCache.get(key, () -> {
+            throw new IllegalStateException("Generation failed");
+        });
+
+        // When
+        staleCache.invalidate(List.of(FLOW_A));
+        staleCache.get(key, () -> regenerated);
+
+        // Then
+        assertSame("Regenerated specification should be cached", regenerated, staleCache.get(key));
+    }
+}
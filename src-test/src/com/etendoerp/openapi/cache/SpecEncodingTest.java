@@ -0,0 +1,71 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Spec encoding test class.
+ */
+public class SpecEncodingTest {
+
+    private static final String SPEC = "{\"openapi\":\"3.0.1\",\"info\":{\"title\":\"Etendo API Headless\"}}";
+
+    /**
+     * Test negotiate without header returns identity.
+     */
+    @Test
+    public void testNegotiateWithoutHeader() {
+        assertEquals(SpecEncoding.IDENTITY, SpecEncoding.negotiate(null));
+        assertEquals(SpecEncoding.IDENTITY, SpecEncoding.negotiate(""));
+    }
+
+    /**
+     * Test negotiate selects gzip when accepted.
+     */
+    @Test
+    public void testNegotiateGzip() {
+        assertEquals(SpecEncoding.GZIP, SpecEncoding.negotiate("gzip, deflate, br"));
+        assertEquals(SpecEncoding.GZIP, SpecEncoding.negotiate("br;q=1.0, gzip;q=0.8"));
+        assertEquals(SpecEncoding.GZIP, SpecEncoding.negotiate("*"));
+    }
+
+    /**
+     * Test negotiate honours a zero quality value.
+     */
+    @Test
+    public void testNegotiateGzipRejected() {
+        assertEquals(SpecEncoding.IDENTITY, SpecEncoding.negotiate("gzip;q=0, *;q=1"));
+        assertEquals(SpecEncoding.IDENTITY, SpecEncoding.negotiate("deflate, br"));
+    }
+
+    /**
+     * Test cached spec keeps a gzip copy with its own etag.
+     *
+     * @throws IOException the exception
+     */
+    @Test
+    public void testCachedSpecGzipContent() throws IOException {
+        // Given
+        CachedSpec spec = new CachedSpec(SPEC);
+
+        // When
+        byte[] gzipContent = spec.getContent(SpecEncoding.GZIP);
+
+        // Then
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(gzipContent))) {
+            assertArrayEquals("Decompressed content should match", spec.getContent(), gzip.readAllBytes());
+        }
+        assertNotEquals("Each coding should have its own etag", spec.getETag(),
+                spec.getETag(SpecEncoding.GZIP));
+        assertTrue("Gzip etag should match its representation",
+                spec.matches(spec.getETag(SpecEncoding.GZIP), SpecEncoding.GZIP));
+    }
+}
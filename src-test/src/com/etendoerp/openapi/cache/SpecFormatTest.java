@@ -0,0 +1,41 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Spec format test class.
+ */
+public class SpecFormatTest {
+
+    /**
+     * Test negotiate without parameter nor header returns JSON.
+     */
+    @Test
+    public void testNegotiateDefault() {
+        assertEquals(SpecFormat.JSON, SpecFormat.negotiate(null, null));
+        assertEquals(SpecFormat.JSON, SpecFormat.negotiate("", "*/*"));
+    }
+
+    /**
+     * Test the format parameter takes precedence over the Accept header.
+     */
+    @Test
+    public void testNegotiateParameter() {
+        assertEquals(SpecFormat.YAML, SpecFormat.negotiate("yaml", "application/json"));
+        assertEquals(SpecFormat.YAML, SpecFormat.negotiate("YML", null));
+        assertEquals(SpecFormat.JSON, SpecFormat.negotiate("json", "application/yaml"));
+    }
+
+    /**
+     * Test negotiate selects YAML only when it is preferred over JSON.
+     */
+    @Test
+    public void testNegotiateAccept() {
+        assertEquals(SpecFormat.YAML, SpecFormat.negotiate(null, "application/yaml"));
+        assertEquals(SpecFormat.YAML, SpecFormat.negotiate(null, "text/x-yaml, application/json;q=0.5"));
+        assertEquals(SpecFormat.JSON, SpecFormat.negotiate(null, "application/json, application/yaml"));
+        assertEquals(SpecFormat.JSON, SpecFormat.negotiate(null, "application/yaml;q=0"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Spec history test class.
+ */
+public class SpecHistoryTest {
+
+    private static final String BASE_URL = "http://localhost:8080/etendo";
+    private static final SpecCacheKey KEY = new SpecCacheKey("FlowA", BASE_URL, false);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Test a patch is returned from a recorded version to the current one.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDiffFromRecordedVersion() throws Exception {
+        // Given
+        SpecHistory history = new SpecHistory(4, 1024 * 1024);
+        CachedSpec previous = new CachedSpec("{\"info\":{\"version\":\"1\"}}");
+        CachedSpec current = new CachedSpec("{\"info\":{\"version\":\"2\"}}");
+        history.record(KEY, previous);
+        history.record(KEY, current);
+
+        // When
+        byte[] patch = history.diff(KEY, previous.getETag(SpecEncoding.GZIP), current);
+
+        // Then
+        assertNotNull("Patch should be returned for a recorded version", patch);
+        JsonNode operations = mapper.readTree(patch);
+        assertEquals(1, operations.size());
+        assertEquals("/info/version", operations.get(0).get("path").asText());
+    }
+
+    /**
+     * Test the current version gets an empty patch.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDiffFromCurrentVersion() throws Exception {
+        // Given
+        SpecHistory history = new SpecHistory(4, 1024 * 1024);
+        CachedSpec current = new CachedSpec("{}");
+
+        // When
+        byte[] patch = history.diff(KEY, current.getETag(), current);
+
+        // Then
+        assertEquals("[]", new String(patch, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test versions older than the ring size are discarded.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testRingIsBounded() throws Exception {
+        // Given
+        SpecHistory history = new SpecHistory(2, 1024 * 1024);
+        CachedSpec oldest = new CachedSpec("{\"v\":1}");
+        CachedSpec middle = new CachedSpec("{\"v\":2}");
+        CachedSpec current = new CachedSpec("{\"v\":3}");
+
+        // When
+        history.record(KEY, oldest);
+        history.record(KEY, middle);
+        history.record(KEY, current);
+
+        // Then
+        assertNull("Discarded version should be unknown", history.diff(KEY, oldest.getETag(), current));
+        assertNotNull("Kept version should be known", history.diff(KEY, middle.getETag(), current));
+    }
+
+    /**
+     * Test YAML specifications and disabled histories are not recorded.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testNotRecorded() throws Exception {
+        // Given
+        CachedSpec previous = new CachedSpec("{\"v\":1}");
+        CachedSpec current = new CachedSpec("{\"v\":2}");
+        SpecCacheKey yamlKey = new SpecCacheKey("FlowA", BASE_URL, false, SpecFormat.YAML);
+        SpecHistory history = new SpecHistory(4, 1024 * 1024);
+        SpecHistory disabled = new SpecHistory(0, 1024 * 1024);
+
+        // When
+        history.record(yamlKey, previous);
+        disabled.record(KEY, previous);
+
+        // Then
+        assertNull(history.diff(yamlKey, previous.getETag(), current));
+        assertNull(disabled.diff(KEY, previous.getETag(), current));
+    }
+}
@@ -0,0 +1,22 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Spec profile test class.
+ */
+public class SpecProfileTest {
+
+    /**
+     * Test parse selects the compact profile only when it is requested.
+     */
+    @Test
+    public void testParse() {
+        assertEquals(SpecProfile.FULL, SpecProfile.parse(null));
+        assertEquals(SpecProfile.FULL, SpecProfile.parse("unknown"));
+        assertEquals(SpecProfile.COMPACT, SpecProfile.parse("compact"));
+        assertEquals(SpecProfile.COMPACT, SpecProfile.parse(" COMPACT "));
+    }
+}
@@ -0,0 +1,162 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Spec snapshot store test class.
+ */
+public class SpecSnapshotStoreTest {
+
+    private static final String BASE_URL = "http://localhost:8080/etendo";
+    private static final String VERSION_A = "versionA";
+    private static final String VERSION_B = "versionB";
+    private static final String JSON = "{\"openapi\":\"3.0.1\"}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SpecSnapshotStore store;
+    private SpecCacheKey key;
+
+    /**
+     * Sets up.
+     *
+     * @throws Exception the exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        store = new SpecSnapshotStore(folder.getRoot().toPath());
+        key = new SpecCacheKey("FlowA", BASE_URL, false);
+    }
+
+    /**
+     * Test a stored snapshot is loaded backed by its files.
+     */
+    @Test
+    public void testStoreAndLoad() {
+        // Given
+        CachedSpec spec = new CachedSpec(JSON);
+
+        // When
+        CachedSpec stored = store.store(key, VERSION_A, spec);
+        CachedSpec loaded = store.load(key, VERSION_A);
+
+        // Then
+        assertTrue("Stored spec should be backed by files", stored.isFileBacked());
+        assertNotNull("Snapshot should be loaded", loaded);
+        assertTrue("Loaded spec should be backed by files", loaded.isFileBacked());
+        assertEquals("Entity tag should be kept", spec.getETag(), loaded.getETag());
+        assertEquals(JSON, loaded.asString());
+        assertEquals(spec.getContentLength(SpecEncoding.GZIP), loaded.getContentLength(SpecEncoding.GZIP));
+    }
+
+    /**
+     * Test snapshots of another key or data version are not loaded.
+     */
+    @Test
+    public void testLoadOtherKeyOrVersion() {
+        // Given
+        store.store(key, VERSION_A, new CachedSpec(JSON));
+
+        // Then
+        assertNull("Other data version should not be loaded", store.load(key, VERSION_B));
+        assertNull("Other key should not be loaded", store.load(new SpecCacheKey("FlowB", BASE_URL, false), VERSION_A));
+    }
+
+    /**
+     * Test snapshots of previous data versions are removed.
+     */
+    @Test
+    public void testStoreRemovesOtherVersions() {
+        // Given
+        store.store(key, VERSION_A, new CachedSpec(JSON));
+
+        // When
+        store.store(key, VERSION_B, new CachedSpec(JSON));
+
+        // Then
+        Path root = folder.getRoot().toPath().resolve("v1");
+        assertFalse("Previous version should be removed", Files.exists(root.resolve(VERSION_A)));
+        assertTrue("Current version should be kept", Files.exists(root.resolve(VERSION_B)));
+    }
+
+    /**
+     * Test snapshots of previous data versions are kept while they are referenced.
+     */
+    @Test
+    public void testStoreKeepsReferencedVersions() {
+        // Given
+        Set<Path> referenced = new HashSet<>();
+        SpecSnapshotStore referencingStore = new SpecSnapshotStore(folder.getRoot().toPath(), () -> referenced);
+        CachedSpec cached = referencingStore.store(key, VERSION_A, new CachedSpec(JSON));
+        referenced.add(cached.getSnapshotDirectory());
+        Path previous = folder.getRoot().toPath().resolve("v1").resolve(VERSION_A);
+
+        // When
+        referencingStore.store(key, VERSION_B, new CachedSpec(JSON));
+
+        // Then
+        assertTrue("Referenced version should be kept", Files.exists(previous));
+
+        // When
+        referenced.clear();
+        referencingStore.store(new SpecCacheKey("FlowB", BASE_URL, false), VERSION_B, new CachedSpec(JSON));
+
+        // Then
+        assertFalse("Version should be removed once not referenced", Files.exists(previous));
+    }
+
+    /**
+     * Test file backed specs are written from their files.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testWriteToFromFile() throws Exception {
+        // Given
+        CachedSpec spec = new CachedSpec(JSON);
+        CachedSpec stored = store.store(key, VERSION_A, spec);
+        ByteArrayOutputStream identity = new ByteArrayOutputStream();
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+
+        // When
+        stored.writeTo(SpecEncoding.IDENTITY, identity);
+        stored.writeTo(SpecEncoding.GZIP, gzip);
+
+        // Then
+        assertArrayEquals(spec.getContent(), identity.toByteArray());
+        assertArrayEquals(spec.getContent(SpecEncoding.GZIP), gzip.toByteArray());
+    }
+
+    /**
+     * Test a disabled store keeps the specs in memory.
+     */
+    @Test
+    public void testDisabledStore() {
+        // Given
+        SpecSnapshotStore disabled = new SpecSnapshotStore(null);
+        CachedSpec spec = new CachedSpec(JSON);
+
+        // Then
+        assertFalse(disabled.isEnabled());
+        assertSame("Spec should not be stored", spec, disabled.store(key, VERSION_A, spec));
+        assertNull(disabled.load(key, VERSION_A));
+    }
+}
@@ -0,0 +1,79 @@
+package com.etendoerp.openapi.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Spec template test class.
+ */
+public class SpecTemplateTest {
+
+    private static final String URL_PLACEHOLDER = "{url}";
+    private static final String DESCRIPTION_PLACEHOLDER = "{description}";
+    private static final String TEMPLATE = "{\"servers\":[{\"url\":\"{url}\",\"description\":\"{description}\"}],"
+            + "\"info\":{\"description\":\"Served from {url}\"},\"paths\":{}}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SpecTemplate template = new SpecTemplate(URL_PLACEHOLDER, DESCRIPTION_PLACEHOLDER);
+
+    /**
+     * Test the rendered specification is the specification generated with the values.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testRenderReplacesPlaceholders() throws Exception {
+        // Given
+        String expected = "{\"servers\":[{\"url\":\"http://host/etendo\",\"description\":\"Quoted \\\"server\\\"\"}],"
+                + "\"info\":{\"description\":\"Served from http://host/etendo\"},\"paths\":{}}";
+
+        // When
+        CachedSpec spec = template.render(new CachedSpec(TEMPLATE), "http://host/etendo", "Quoted \"server\"");
+
+        // Then
+        assertEquals("Placeholders should be replaced by the escaped values", expected, spec.asString());
+        assertEquals("ETag should be the one of the rendered content", new CachedSpec(expected).getETag(),
+                spec.getETag());
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(spec.getContent(SpecEncoding.GZIP)))) {
+            assertArrayEquals("Gzip should decompress to the rendered specification", spec.getContent(),
+                    in.readAllBytes());
+        }
+    }
+
+    /**
+     * Test a specification backed by snapshot files is rendered into memory.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testRenderFileBackedSpecification() throws Exception {
+        // Given
+        CachedSpec memory = new CachedSpec(TEMPLATE);
+        Path contentFile = folder.getRoot().toPath().resolve("spec.json");
+        Path gzipFile = folder.getRoot().toPath().resolve("spec.json.gz");
+        Files.write(contentFile, memory.getContent());
+        Files.write(gzipFile, memory.getContent(SpecEncoding.GZIP));
+        CachedSpec snapshot = new CachedSpec(contentFile, gzipFile, memory.getETag());
+
+        // When
+        CachedSpec spec = template.render(snapshot, "http://host/etendo", "Local Server");
+
+        // Then
+        assertFalse("Rendered spec should be kept in memory", spec.isFileBacked());
+        assertEquals("Content should match the in-memory rendering",
+                template.render(memory, "http://host/etendo", "Local Server").asString(), spec.asString());
+    }
+}
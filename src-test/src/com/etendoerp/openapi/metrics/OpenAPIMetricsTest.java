@@ -0,0 +1,83 @@
+package com.etendoerp.openapi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Open api metrics test class.
+ */
+public class OpenAPIMetricsTest {
+
+    /**
+     * Test record counts the runs of each phase in the bucket of their duration.
+     */
+    @Test
+    public void testRecordPhase() {
+        // Given
+        OpenAPIMetrics metrics = new OpenAPIMetrics(true);
+        long now = System.nanoTime();
+
+        // When
+        metrics.record(OpenAPIMetrics.Phase.SERIALIZATION, now);
+        metrics.record(OpenAPIMetrics.Phase.SERIALIZATION, now - TimeUnit.SECONDS.toNanos(20));
+
+        // Then
+        TimerSnapshot timer = metrics.getTimers().get("phase.serialization");
+        assertEquals("Should count both runs", 2, timer.getCount());
+        assertEquals("Should count the slow run over the last bound", 1L, (long) timer.getBuckets().get("inf"));
+        assertTrue("Should keep the slowest run", timer.getMaxMillis() >= 20000);
+        assertEquals("Mean should be half the total", timer.getTotalMillis() / 2, timer.getMeanMillis(), 0.001);
+    }
+
+    /**
+     * Test the counters are recorded until they are reset.
+     */
+    @Test
+    public void testCountersAndReset() throws Exception {
+        // Given
+        OpenAPIMetrics metrics = new OpenAPIMetrics(true);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        // When
+        metrics.recordCacheHit();
+        metrics.recordCacheMiss();
+        metrics.recordBytesServed(100);
+        try (OutputStream out = metrics.countBytesServed(body)) {
+            out.write(new byte[10], 2, 5);
+            out.write(1);
+        }
+
+        // Then
+        assertEquals("Should count the hit", 1, metrics.getCacheHits());
+        assertEquals("Should count the miss", 1, metrics.getCacheMisses());
+        assertEquals("Should count the bytes of both responses", 106, metrics.getBytesServed());
+        assertEquals("Should write through the counting stream", 6, body.size());
+        metrics.reset();
+        assertEquals("Should reset the counters", 0, metrics.getBytesServed());
+    }
+
+    /**
+     * Test disabled metrics record nothing.
+     */
+    @Test
+    public void testDisabled() {
+        // Given
+        OpenAPIMetrics metrics = new OpenAPIMetrics(false);
+
+        // When
+        metrics.record(OpenAPIMetrics.Phase.GENERATION, System.nanoTime());
+        metrics.recordCacheHit();
+        metrics.recordDalQueries(metrics.getStatementCount());
+
+        // Then
+        assertTrue("Should not record timers", metrics.getTimers().isEmpty());
+        assertEquals("Should not record hits", 0, metrics.getCacheHits());
+        assertEquals("Should not record queries", 0, metrics.getGlobalDalQueries());
+    }
+}
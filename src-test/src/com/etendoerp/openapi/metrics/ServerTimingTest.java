@@ -0,0 +1,79 @@
+package com.etendoerp.openapi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Server timing test class.
+ */
+public class ServerTimingTest {
+
+    @After
+    public void tearDown() {
+        ServerTiming.end();
+    }
+
+    /**
+     * Test the header lists the cache status, the recorded phases and the total.
+     */
+    @Test
+    public void testToHeader() {
+        // Given
+        ServerTiming timing = ServerTiming.start();
+        OpenAPIMetrics metrics = new OpenAPIMetrics(false);
+
+        // When
+        metrics.recordCacheMiss();
+        metrics.record(OpenAPIMetrics.Phase.FLOWS, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.record(OpenAPIMetrics.Phase.FLOWS, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+        String header = timing.toHeader();
+
+        // Then
+        assertTrue("Should start with the cache status", header.startsWith("cache;desc=miss, flows;dur="));
+        double flows = Double.parseDouble(header.replaceAll(".*flows;dur=([0-9.]+),.*", "$1"));
+        assertTrue("Should add up the runs of the phase", flows >= 10);
+        assertTrue("Should end with the total", header.matches(".*, total;dur=[0-9]+\\.[0-9]$"));
+    }
+
+    /**
+     * Test wrap binds the timing of the calling thread to the task.
+     */
+    @Test
+    public void testWrapBindsTiming() throws Exception {
+        // Given
+        ServerTiming timing = ServerTiming.start();
+        Supplier<ServerTiming> task = ServerTiming.wrap(ServerTiming::getCurrent);
+
+        // When
+        ServerTiming bound = CompletableFuture.supplyAsync(task).get();
+
+        // Then
+        assertSame("Task should run with the timing of the calling thread", timing, bound);
+    }
+
+    /**
+     * Test wrap returns the task itself when the request is not timed.
+     */
+    @Test
+    public void testWrapWithoutTiming() {
+        // Given
+        Supplier<ServerTiming> task = ServerTiming::getCurrent;
+
+        // When
+        Supplier<ServerTiming> wrapped = ServerTiming.wrap(task);
+
+        // Then
+        assertSame("Should not wrap the task", task, wrapped);
+        assertNull("Should not be timed", wrapped.get());
+        assertEquals("Should not record phases", 0, new OpenAPIMetrics(false).getTimers().size());
+    }
+}
@@ -0,0 +1,218 @@
+package com.etendoerp.openapi.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.info.Info;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import io.swagger.v3.oas.models.responses.ApiResponses;
+import io.swagger.v3.oas.models.security.SecurityRequirement;
+import io.swagger.v3.oas.models.servers.Server;
+import io.swagger.v3.oas.models.tags.Tag;
+
+/**
+ * Open api fragment test class.
+ */
+public class OpenAPIFragmentTest {
+
+    private static final String PATH = "/sws/test";
+    private static final String TAG = "Test";
+
+    /**
+     * Test from copies the content of the document.
+     */
+    @Test
+    public void testFromCopiesContent() {
+        // Given
+        OpenAPI openAPI = new OpenAPI()
+                .path(PATH, new PathItem().post(new Operation()))
+                .components(new Components().addSchemas("TestSchema", new Schema<>().type("object")))
+                .addTagsItem(new Tag().name(TAG));
+
+        // When
+        OpenAPIFragment fragment = OpenAPIFragment.from(openAPI);
+        openAPI.path("/sws/other", new PathItem());
+
+        // Then
+        assertEquals("Should keep the paths of the document", 1, fragment.getPaths().size());
+        assertTrue("Should keep the schemas of the document", fragment.getSchemas().containsKey("TestSchema"));
+        assertEquals("Should keep the tags of the document", TAG, fragment.getTags().get(0).getName());
+    }
+
+    /**
+     * Test from an empty document.
+     */
+    @Test
+    public void testFromEmptyDocument() {
+        // When
+        OpenAPIFragment fragment = OpenAPIFragment.from(new OpenAPI());
+
+        // Then
+        assertTrue("Fragment should be empty", fragment.isEmpty());
+    }
+
+    /**
+     * Test merge into replaces existing components and keeps existing tags.
+     */
+    @Test
+    public void testMergeIntoReplacesComponentsAndKeepsTags() {
+        // Given
+        Schema<Object> addedSchema = new Schema<>().type("string");
+        OpenAPI target = new OpenAPI()
+                .components(new Components().addSchemas("TestSchema", new Schema<>().type("object")))
+                .addTagsItem(new Tag().name(TAG));
+        OpenAPIFragment fragment = OpenAPIFragment.from(new OpenAPI()
+                .components(new Components().addSchemas("TestSchema", addedSchema))
+                .addTagsItem(new Tag().name(TAG)));
+
+        // When
+        fragment.mergeInto(target);
+
+        // Then
+        assertSame("Last schema should win", addedSchema, target.getComponents().getSchemas().get("TestSchema"));
+        assertEquals("Tag should not be duplicated", 1, target.getTags().size());
+    }
+
+    /**
+     * Test merge into carries the info, servers, security and extensions set by the endpoint.
+     */
+    @Test
+    public void testMergeIntoCarriesDocumentValues() {
+        // Given
+        SecurityRequirement bearer = new SecurityRequirement().addList("bearerAuth");
+        OpenAPI target = new OpenAPI().info(new Info().title("Base")).addSecurityItem(bearer);
+        Info info = new Info().title("Endpoint");
+        OpenAPIFragment fragment = OpenAPIFragment.from(new OpenAPI()
+                .info(info)
+                .addServersItem(new Server().url("http://localhost/extra"))
+                .addSecurityItem(new SecurityRequirement().addList("bearerAuth"))
+                .addSecurityItem(new SecurityRequirement().addList("apiKey"))
+                .extensions(Collections.singletonMap("x-flow", TAG)));
+
+        // When
+        fragment.mergeInto(target);
+
+        // Then
+        assertFalse("Fragment should not be empty", fragment.isEmpty());
+        assertSame("Info should be replaced", info, target.getInfo());
+        assertEquals("Server should be added", 1, target.getServers().size());
+        assertEquals("Equal requirements should not be duplicated", 2, target.getSecurity().size());
+        assertEquals("Extension should be added", TAG, target.getExtensions().get("x-flow"));
+    }
+
+    /**
+     * Test a fragment declaring servers and security merges into a document whose lists are immutable, as the ones
+     * set by the controller used to be.
+     */
+    @Test
+    public void testMergeIntoImmutableDocumentLists() {
+        // Given
+        OpenAPI target = new OpenAPI()
+                .servers(Collections.singletonList(new Server().url("http://localhost/etendo")))
+                .security(Collections.singletonList(new SecurityRequirement().addList("bearerAuth")));
+        OpenAPIFragment fragment = OpenAPIFragment.from(new OpenAPI()
+                .addServersItem(new Server().url("http://localhost/extra"))
+                .addSecurityItem(new SecurityRequirement().addList("apiKey")));
+
+        // When
+        fragment.mergeInto(target);
+
+        // Then
+        assertEquals("Server should be added", 2, target.getServers().size());
+        assertEquals("Security requirement should be added", 2, target.getSecurity().size());
+    }
+
+    /**
+     * Test merge into combines the operations of a shared path without modifying the fragments.
+     */
+    @Test
+    public void testMergeIntoCombinesSharedPath() {
+        // Given
+        PathItem getItem = new PathItem().get(new Operation().operationId("get"));
+        PathItem postItem = new PathItem().post(new Operation().operationId("post"));
+        OpenAPIFragment first = OpenAPIFragment.from(new OpenAPI().path(PATH, getItem));
+        OpenAPIFragment second = OpenAPIFragment.from(new OpenAPI().path(PATH, postItem));
+        OpenAPI target = new OpenAPI();
+
+        // When
+        first.mergeInto(target);
+        second.mergeInto(target);
+
+        // Then
+        PathItem merged = target.getPaths().get(PATH);
+        assertNotSame("Should create a new path item", getItem, merged);
+        assertEquals("get", merged.getGet().getOperationId());
+        assertEquals("post", merged.getPost().getOperationId());
+        assertNull("Fragment path item should not be modified", getItem.getPost());
+    }
+
+    /**
+     * Test the same fragment can be merged into several documents.
+     */
+    @Test
+    public void testMergeIntoSeveralDocuments() {
+        // Given
+        OpenAPIFragment fragment = OpenAPIFragment.from(new OpenAPI()
+                .path(PATH, new PathItem().get(new Operation()))
+                .components(new Components().addSchemas("TestSchema", new Schema<>().type("object"))));
+        OpenAPI firstTarget = new OpenAPI();
+        OpenAPI secondTarget = new OpenAPI();
+
+        // When
+        fragment.mergeInto(firstTarget);
+        firstTarget.getComponents().addSchemas("Other", new Schema<>());
+        fragment.mergeInto(secondTarget);
+
+        // Then
+        assertEquals("Second document should not see changes of the first one", 1,
+                secondTarget.getComponents().getSchemas().size());
+        assertTrue(secondTarget.getPaths().containsKey(PATH));
+    }
+
+    /**
+     * Test extract operation keeps the operation with the components it references.
+     */
+    @Test
+    public void testExtractOperation() {
+        // Given
+        Operation get = new Operation().addTagsItem(TAG).responses(new ApiResponses().addApiResponse("200",
+                new ApiResponse().content(new Content().addMediaType("application/json",
+                        new MediaType().schema(new Schema<>().$ref("#/components/schemas/Order"))))));
+        OpenAPIFragment fragment = OpenAPIFragment.from(new OpenAPI()
+                .path(PATH, new PathItem().get(get).post(new Operation()))
+                .components(new Components()
+                        .addSchemas("Order", new Schema<>().addProperties("line", new Schema<>().$ref("#/components/schemas/Line")))
+                        .addSchemas("Line", new Schema<>().type("object"))
+                        .addSchemas("Unrelated", new Schema<>().type("object")))
+                .addTagsItem(new Tag().name(TAG))
+                .addTagsItem(new Tag().name("Other")));
+
+        // When
+        OpenAPIFragment operation = fragment.extractOperation(PATH, PathItem.HttpMethod.GET);
+
+        // Then
+        PathItem pathItem = operation.getPaths().get(PATH);
+        assertSame("Should keep the operation", get, pathItem.getGet());
+        assertNull("Should not keep other operations", pathItem.getPost());
+        assertTrue("Should keep referenced schemas", operation.getSchemas().containsKey("Order"));
+        assertTrue("Should keep transitively referenced schemas", operation.getSchemas().containsKey("Line"));
+        assertFalse("Should not keep unrelated schemas", operation.getSchemas().containsKey("Unrelated"));
+        assertEquals("Should keep only the tags of the operation", 1, operation.getTags().size());
+        assertNull("Missing operations should not be found", fragment.extractOperation(PATH, PathItem.HttpMethod.PUT));
+    }
+}
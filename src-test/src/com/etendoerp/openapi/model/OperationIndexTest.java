@@ -0,0 +1,64 @@
+package com.etendoerp.openapi.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+
+/**
+ * Operation index test class.
+ */
+public class OperationIndexTest {
+
+    private static final String PATH = "/sws/test";
+
+    /**
+     * Test operations are found by operation id and by path and method.
+     */
+    @Test
+    public void testFindOperation() {
+        // Given
+        OpenAPIFragment first = OpenAPIFragment.from(new OpenAPI()
+                .path(PATH, new PathItem().get(new Operation().operationId("getTest"))));
+        OpenAPIFragment second = OpenAPIFragment.from(new OpenAPI()
+                .path("/sws/other", new PathItem().post(new Operation().operationId("postOther"))));
+
+        // When
+        OperationIndex index = OperationIndex.build(List.of(first, second));
+
+        // Then
+        assertEquals(2, index.size());
+        OpenAPIFragment byId = index.find("postOther");
+        assertNotNull("Should find the operation by id", byId);
+        assertNotNull(byId.getPaths().get("/sws/other").getPost());
+        assertNotNull("Should find the operation by path", index.find(PATH, PathItem.HttpMethod.GET));
+        assertNull("Should not find unknown operations", index.find("unknown"));
+        assertNull("Should not find other methods", index.find(PATH, PathItem.HttpMethod.DELETE));
+    }
+
+    /**
+     * Test an operation defined by several fragments is taken from the last one.
+     */
+    @Test
+    public void testLastFragmentWins() {
+        // Given
+        Operation replaced = new Operation().operationId("getTest");
+        Operation replacement = new Operation().operationId("getTest").summary("replacement");
+        OperationIndex index = OperationIndex.build(List.of(
+                OpenAPIFragment.from(new OpenAPI().path(PATH, new PathItem().get(replaced))),
+                OpenAPIFragment.from(new OpenAPI().path(PATH, new PathItem().get(replacement)))));
+
+        // When
+        OpenAPIFragment operation = index.find(PATH, PathItem.HttpMethod.GET);
+
+        // Then
+        assertEquals("replacement", operation.getPaths().get(PATH).getGet().getSummary());
+    }
+}
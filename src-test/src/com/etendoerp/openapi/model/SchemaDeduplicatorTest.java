@@ -0,0 +1,95 @@
+package com.etendoerp.openapi.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Schema deduplicator test class.
+ */
+public class SchemaDeduplicatorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String REF_PREFIX = "#/components/schemas/";
+    private static final String SHARED_SCHEMA = "{\"type\":\"object\",\"description\":\"Values of the record\","
+            + "\"additionalProperties\":{\"type\":\"string\",\"description\":\"Value of the field\"}}";
+
+    private static ObjectNode document(String firstSchema, String secondSchema, String components) throws Exception {
+        return (ObjectNode) MAPPER.readTree("{\"paths\":{"
+                + "\"/first\":{\"post\":{\"requestBody\":{\"content\":{\"application/json\":{\"schema\":"
+                + firstSchema + "}}}}},"
+                + "\"/second\":{\"get\":{\"responses\":{\"200\":{\"content\":{\"application/json\":{\"schema\":"
+                + secondSchema + "}}}}}}},"
+                + "\"components\":{\"schemas\":" + components + "}}");
+    }
+
+    private static JsonNode firstSchema(ObjectNode document) {
+        return document.at("/paths/~1first/post/requestBody/content/application~1json/schema");
+    }
+
+    private static JsonNode secondSchema(ObjectNode document) {
+        return document.at("/paths/~1second/get/responses/200/content/application~1json/schema");
+    }
+
+    /**
+     * Test deduplicate moves a repeated schema into the components.
+     */
+    @Test
+    public void testDeduplicateMovesRepeatedSchema() throws Exception {
+        // Given
+        ObjectNode document = document(SHARED_SCHEMA, SHARED_SCHEMA, "{}");
+
+        // When
+        SchemaDeduplicator.deduplicate(document);
+
+        // Then
+        String ref = firstSchema(document).path("$ref").asText();
+        assertTrue("Should reference a shared component", ref.startsWith(REF_PREFIX + "Shared_"));
+        assertEquals("Both copies should reference the same component", ref,
+                secondSchema(document).path("$ref").asText());
+        JsonNode component = document.path("components").path("schemas").path(ref.substring(REF_PREFIX.length()));
+        assertEquals("Component should keep the schema", MAPPER.readTree(SHARED_SCHEMA), component);
+    }
+
+    /**
+     * Test deduplicate keeps schemas that are not repeated or too small to be moved.
+     */
+    @Test
+    public void testDeduplicateKeepsUniqueAndSmallSchemas() throws Exception {
+        // Given
+        String smallSchema = "{\"type\":\"string\"}";
+        ObjectNode document = document(SHARED_SCHEMA, "{\"type\":\"array\",\"items\":" + smallSchema + "}", "{}");
+        ObjectNode expected = document.deepCopy();
+
+        // When
+        SchemaDeduplicator.deduplicate(document);
+
+        // Then
+        assertEquals("Document should not change", expected, document);
+    }
+
+    /**
+     * Test deduplicate replaces a schema equal to an existing component with a reference to it.
+     */
+    @Test
+    public void testDeduplicateReusesExistingComponent() throws Exception {
+        // Given
+        ObjectNode document = document(SHARED_SCHEMA, "{\"type\":\"integer\"}",
+                "{\"Values\":" + SHARED_SCHEMA + "}");
+
+        // When
+        SchemaDeduplicator.deduplicate(document);
+
+        // Then
+        assertEquals("Should reference the existing component", REF_PREFIX + "Values",
+                firstSchema(document).path("$ref").asText());
+        assertEquals("Should not add components", 1, document.path("components").path("schemas").size());
+        assertFalse("Should keep the other schema inline", secondSchema(document).has("$ref"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.etendoerp.openapi.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Spec compactor test class.
+ */
+public class SpecCompactorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Test compact removes the examples and descriptions and keeps the names of the properties.
+     */
+    @Test
+    public void testCompactRemovesExamplesAndDescriptions() throws Exception {
+        // Given
+        ObjectNode document = (ObjectNode) MAPPER.readTree("{\"info\":{\"title\":\"API\",\"description\":\"Long\"},"
+                + "\"paths\":{\"/test\":{\"post\":{\"description\":\"Long\",\"requestBody\":{\"content\":{"
+                + "\"application/json\":{\"schema\":{\"type\":\"object\",\"example\":\"{}\",\"properties\":{"
+                + "\"description\":{\"type\":\"string\",\"description\":\"Long\",\"example\":\"Text\"}}},"
+                + "\"examples\":{\"sample\":{\"value\":{}}}}}}}}}}");
+
+        // When
+        SpecCompactor.compact(document);
+
+        // Then
+        assertFalse("Should remove the description of the info", document.path("info").has("description"));
+        JsonNode operation = document.at("/paths/~1test/post");
+        assertFalse("Should remove the description of the operation", operation.has("description"));
+        JsonNode mediaType = operation.at("/requestBody/content/application~1json");
+        assertFalse("Should remove the examples of the media type", mediaType.has("examples"));
+        assertFalse("Should remove the example of the schema", mediaType.path("schema").has("example"));
+        JsonNode property = mediaType.at("/schema/properties/description");
+        assertEquals("Should keep the property called description", "string", property.path("type").asText());
+        assertFalse("Should remove the description of the property", property.has("description"));
+    }
+
+    /**
+     * Test compact keeps the required descriptions of the responses and the servers block.
+     */
+    @Test
+    public void testCompactKeepsResponseDescriptionsAndServers() throws Exception {
+        // Given
+        ObjectNode document = (ObjectNode) MAPPER.readTree("{\"servers\":[{\"url\":\"/\",\"description\":\"Server\"}],"
+                + "\"paths\":{\"/test\":{\"get\":{\"responses\":{\"200\":{\"description\":\"OK\","
+                + "\"headers\":{\"X-Test\":{\"description\":\"Long\"}}}}}}}}");
+
+        // When
+        SpecCompactor.compact(document);
+
+        // Then
+        JsonNode response = document.at("/paths/~1test/get/responses/200");
+        assertEquals("Should keep the description of the response", "OK", response.path("description").asText());
+        assertTrue("Should keep the header", response.path("headers").has("X-Test"));
+        assertFalse("Should remove the description of the header",
+                response.path("headers").path("X-Test").has("description"));
+        assertEquals("Should keep the servers", "Server", document.at("/servers/0/description").asText());
+    }
+}
@@ -0,0 +1,76 @@
+package com.etendoerp.openapi.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.tags.Tag;
+
+/**
+ * Tag catalog test class.
+ */
+public class TagCatalogTest {
+
+    private static final String FLOW_A = "FlowA";
+    private static final String FLOW_B = "FlowB";
+
+    /**
+     * Test the catalog counts the operations of each tag in order of appearance.
+     */
+    @Test
+    public void testBuildCountsOperations() {
+        // Given
+        OpenAPIFragment first = OpenAPIFragment.from(new OpenAPI()
+                .path("/a", new PathItem().get(new Operation().addTagsItem(FLOW_A))
+                        .post(new Operation().addTagsItem(FLOW_A)))
+                .addTagsItem(new Tag().name(FLOW_A).description("Flow A")));
+        OpenAPIFragment second = OpenAPIFragment.from(new OpenAPI()
+                .path("/b", new PathItem().get(new Operation().addTagsItem(FLOW_B))));
+
+        // When
+        List<TagCatalog.Entry> tags = TagCatalog.build(List.of(first, second)).getTags();
+
+        // Then
+        assertEquals(2, tags.size());
+        assertEquals(FLOW_A, tags.get(0).getName());
+        assertEquals("Flow A", tags.get(0).getDescription());
+        assertEquals(2, tags.get(0).getOperationCount());
+        assertEquals(FLOW_B, tags.get(1).getName());
+        assertEquals(1, tags.get(1).getOperationCount());
+    }
+
+    /**
+     * Test the hash of a tag changes when a schema referenced by its operations changes.
+     */
+    @Test
+    public void testHashCoversReferencedSchemas() {
+        // When
+        String hash = TagCatalog.build(List.of(fragmentWithSchema("string"))).getTags().get(0).getHash();
+        String sameHash = TagCatalog.build(List.of(fragmentWithSchema("string"))).getTags().get(0).getHash();
+        String otherHash = TagCatalog.build(List.of(fragmentWithSchema("integer"))).getTags().get(0).getHash();
+
+        // Then
+        assertEquals("Same content should have the same hash", hash, sameHash);
+        assertNotEquals("Changed schema should change the hash", hash, otherHash);
+    }
+
+    private static OpenAPIFragment fragmentWithSchema(String type) {
+        Operation operation = new Operation().addTagsItem(FLOW_A).requestBody(new RequestBody().content(
+                new Content().addMediaType("application/json",
+                        new MediaType().schema(new Schema<>().$ref("#/components/schemas/Body")))));
+        return OpenAPIFragment.from(new OpenAPI()
+                .path("/a", new PathItem().post(operation))
+                .components(new Components().addSchemas("Body", new Schema<>().type(type))));
+    }
+}
@@ -67,6 +67,18 @@ public class JobsAndActionsEndpointTest {
         assertTrue("Should return true for valid tag", result);
     }
 
+    /**
+     * Test supported tags match the valid tags.
+     */
+    @Test
+    public void testGetSupportedTags() {
+        // When
+        var tags = jobsAndActionsEndpoint.getSupportedTags();
+
+        // Then
+        assertEquals("Should declare the Jobs and Actions tag", List.of("Jobs and Actions"), tags);
+    }
+
     /**
      * Test is valid with invalid tag returns false.
      */
@@ -0,0 +1,52 @@
+package com.etendoerp.openapi;
+
+import java.util.Collection;
+
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.model.ad.system.Client;
+
+/**
+ * Resolves the client whose flows are documented in the specifications generated by the current thread.
+ * <p>
+ * Users of a client get a specification with the flows of their client and the system flows only, generated and
+ * cached for their client. Requests without context and those of the system client get every flow, as before the
+ * specifications were scoped.
+ */
+public final class ClientScope {
+
+  /**
+   * Id of the system client, whose flows are documented in the specification of every client.
+   */
+  public static final String SYSTEM_CLIENT_ID = "0";
+
+  private ClientScope() {
+  }
+
+  /**
+   * Returns the client the specifications of the current thread are scoped to.
+   *
+   * @return the id of the current client, or null when every flow is documented
+   */
+  public static String getClientId() {
+    OBContext context = OBContext.getOBContext();
+    Client client = context == null ? null : context.getCurrentClient();
+    if (client == null || SYSTEM_CLIENT_ID.equals(client.getId())) {
+      return null;
+    }
+    return client.getId();
+  }
+
+  /**
+   * Checks if the data of a client scope can change when the flows of the given clients change.
+   *
+   * @param clientId
+   *     the client of the scope, null for the scope with every flow
+   * @param changedClientIds
+   *     the clients of the changed flows, null if they are not known
+   * @return true if the scope includes any of the changed flows, false otherwise
+   */
+  public static boolean isAffectedBy(String clientId, Collection<String> changedClientIds) {
+    return clientId == null || changedClientIds == null || changedClientIds.contains(SYSTEM_CLIENT_ID)
+        || changedClientIds.contains(clientId);
+  }
+}
@@ -0,0 +1,72 @@
+package com.etendoerp.openapi;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import org.openbravo.base.exception.OBException;
+
+/**
+ * Computes the SHA-256 hashes that identify the content of the specifications, their snapshots, tags and schemas.
+ * <p>
+ * Hashes are encoded as unpadded URL safe Base64, so they can be used in entity tags, file names and component names.
+ */
+public final class ContentHash {
+
+  private static final String ALGORITHM = "SHA-256";
+
+  private ContentHash() {
+  }
+
+  /**
+   * Returns the hash of the given bytes.
+   *
+   * @param content
+   *     the bytes to hash
+   * @return the encoded hash
+   */
+  public static String of(byte[] content) {
+    return encode(newDigest().digest(content));
+  }
+
+  /**
+   * Returns the hash of the UTF-8 encoding of the given value.
+   *
+   * @param value
+   *     the value to hash
+   * @return the encoded hash
+   */
+  public static String of(String value) {
+    return of(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns a new digest, for the content that is hashed in several parts. Its result is encoded with
+   * {@link #of(MessageDigest)}.
+   *
+   * @return the SHA-256 digest
+   */
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new OBException(ALGORITHM + " digest not available", e);
+    }
+  }
+
+  /**
+   * Completes the given digest and returns its hash.
+   *
+   * @param digest
+   *     a digest returned by {@link #newDigest()}, it is reset
+   * @return the encoded hash
+   */
+  public static String of(MessageDigest digest) {
+    return encode(digest.digest());
+  }
+
+  private static String encode(byte[] digest) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+  }
+}
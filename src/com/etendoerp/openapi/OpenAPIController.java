@@ -1,33 +1,57 @@
 package com.etendoerp.openapi;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.criterion.Restrictions;
 import org.openbravo.base.HttpBaseUtils;
 import org.openbravo.base.session.OBPropertiesProvider;
-import org.openbravo.base.weld.WeldUtils;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.dal.service.OBCriteria;
+import org.openbravo.dal.service.OBDal;
+import org.openbravo.model.ad.access.Role;
 import org.openbravo.service.web.WebService;
 
-import com.etendoerp.openapi.model.OpenAPIEndpoint;
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.etendoerp.openapi.cache.CachedSpec;
+import com.etendoerp.openapi.cache.ClusterSpecVersions;
+import com.etendoerp.openapi.cache.FlowDataVersion;
+import com.etendoerp.openapi.cache.OpenAPISpecCache;
+import com.etendoerp.openapi.cache.SpecCacheKey;
+import com.etendoerp.openapi.cache.SpecEncoding;
+import com.etendoerp.openapi.cache.SpecFormat;
+import com.etendoerp.openapi.cache.SpecHistory;
+import com.etendoerp.openapi.cache.SpecProfile;
+import com.etendoerp.openapi.cache.SpecSnapshotStore;
+import com.etendoerp.openapi.cache.SpecTemplate;
+import com.etendoerp.openapi.data.OpenApiFlow;
+import com.etendoerp.openapi.metrics.OpenAPIMetrics;
+import com.etendoerp.openapi.metrics.ServerTiming;
+import com.etendoerp.openapi.model.OpenAPIEndpointRegistry;
+import com.etendoerp.openapi.model.OpenAPIFragment;
+import com.etendoerp.openapi.model.SchemaDeduplicator;
+import com.etendoerp.openapi.model.SpecCompactor;
+import com.etendoerp.openapi.model.TagCatalog;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import io.swagger.v3.oas.integration.GenericOpenApiContext;
 import io.swagger.v3.oas.integration.OpenApiConfigurationException;
-import io.swagger.v3.oas.integration.SwaggerConfiguration;
-import io.swagger.v3.oas.integration.api.OpenApiContext;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.ExternalDocumentation;
 import io.swagger.v3.oas.models.OpenAPI;
@@ -57,7 +81,7 @@ public class OpenAPIController implements WebService {
   public static final String BEARER_TOKEN_DESCRIPTION = "Bearer token authentication using token from <a href=\"#/Login/post_sws_login\" target=\"_blank\">Login</a> endpoint.";
   public static final String BASIC_AUTH_DESCRIPTION = "Basic authentication with username and password";
   private static final String DEFAULT_BASE_URL = "%s/%s";
-  private static final String RESOURCE_PACKAGE = "com.etendoerp.openapi";
+  private static final int SERIALIZATION_BUFFER_SIZE = 64 * 1024;
   private static final Logger log = LogManager.getLogger(OpenAPIController.class);
 
 
@@ -67,9 +91,53 @@ public class OpenAPIController implements WebService {
   public static final String STRING = "string";
   public static final String QUERY = "query";
   public static final String OBJECT = "object";
+  private static final String ETAG_HEADER = "ETag";
+  private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  private static final String CACHE_CONTROL_HEADER = "Cache-Control";
+  private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  private static final String ACCEPT_HEADER = "Accept";
+  private static final String VARY_HEADER = "Vary";
+  private static final String VARY_VALUE = ACCEPT_HEADER + ", " + ACCEPT_ENCODING_HEADER;
+  private static final String HEAD_METHOD = "HEAD";
+  private static final String SPEC_ETAG_HEADER = "X-OpenAPI-ETag";
+  private static final String JSON_PATCH_CONTENT_TYPE = "application/json-patch+json";
+  private static final String BASE_URL_PLACEHOLDER = "{etapi.openapi.server.url}";
+  private static final String SERVER_DESCRIPTION_PLACEHOLDER = "{etapi.openapi.server.description}";
+  private static final SpecTemplate SERVER_TEMPLATE = new SpecTemplate(BASE_URL_PLACEHOLDER,
+      SERVER_DESCRIPTION_PLACEHOLDER);
+  private static final String SYSTEM_ADMIN_ROLE_ID = "0";
+
+  private static volatile OpenAPIFragment loginFragment;
+  private static volatile TagCatalog loginCatalog;
 
   /**
    * Handles HTTP GET requests to generate OpenAPI documentation.
+   * <p>
+   * The response carries a strong ETag of the specification. Requests whose If-None-Match header matches it are
+   * answered with 304 Not Modified, and HEAD requests only receive the headers, including the Content-Length.
+   * Clients that accept gzip receive the compressed copy kept with the cached specification. Specifications loaded
+   * from disk snapshots are transferred from their files.
+   * <p>
+   * The specification is served as YAML when the format parameter is "yaml" or the Accept header prefers a YAML
+   * media type, see {@link SpecFormat#negotiate(String, String)}. Each format is cached on its own. When the profile
+   * parameter is "compact", the examples and descriptions are left out for automated clients, see
+   * {@link SpecProfile#COMPACT}. Each profile is cached on its own too.
+   * <p>
+   * When the operationId parameter, or the path and method parameters, are given, only that operation is served,
+   * see {@link #getOpenAPIOperation(String, String, String, String, PathItem.HttpMethod, SpecFormat)}. When the
+   * catalog parameter is true, the summary of the tags of the client is served instead, see
+   * {@link #getOpenAPICatalog(SpecFormat)}, and when the metrics parameter is true, the generation and serving metrics
+   * are, see {@link #getOpenAPIMetrics(SpecFormat)}. The metrics are only served to the System Administrator role,
+   * unless the {@value OpenAPIProperties#METRICS_PUBLIC} property is enabled, and they are not cached by clients as
+   * they change on every request.
+   * <p>
+   * Clients that already have a version of a JSON specification can send its entity tag in the since parameter. If
+   * that version is still kept by the {@link SpecHistory}, they receive a JSON Patch to the current version, whose
+   * entity tag is sent in the X-OpenAPI-ETag header. Otherwise, the whole specification is sent.
+   * <p>
+   * When the {@value OpenAPIProperties#SERVER_TIMING_ENABLED} property is enabled, the response carries a
+   * Server-Timing header with the duration of the phases run to answer it, see {@link ServerTiming}.
    *
    * @param path
    *     The request path.
@@ -83,15 +151,205 @@ public class OpenAPIController implements WebService {
   @Override
   public void doGet(String path, HttpServletRequest request, HttpServletResponse response)
       throws Exception {
+    if (OpenAPIProperties.getBooleanProperty(OpenAPIProperties.SERVER_TIMING_ENABLED, false)) {
+      ServerTiming.start();
+    }
     try {
       String hostAddress = HttpBaseUtils.getLocalHostAddress(request, true);
-      String openApiJson = getOpenAPIJson(hostAddress, request.getParameter("tag"), request.getParameter("host"));
-      response.setContentType(APPLICATION_JSON);
-      response.setCharacterEncoding("UTF-8");
-      response.getWriter().write(openApiJson);
+      String tag = RequestedTags.normalize(request.getParameter("tag"), OpenAPIController::isKnownTag);
+      String baseUrl = request.getParameter("host");
+      SpecEncoding encoding = SpecEncoding.negotiate(request.getHeader(ACCEPT_ENCODING_HEADER));
+      SpecFormat format = SpecFormat.negotiate(request.getParameter("format"), request.getHeader(ACCEPT_HEADER));
+      SpecProfile profile = SpecProfile.parse(request.getParameter("profile"));
+      if (StringUtils.equalsIgnoreCase("true", request.getParameter("catalog"))) {
+        writeSpec(getOpenAPICatalog(format), format.getContentType(), encoding, request, response);
+        return;
+      }
+      if (StringUtils.equalsIgnoreCase("true", request.getParameter("metrics"))) {
+        if (!OpenAPIMetrics.getInstance().isEnabled()) {
+          response.sendError(HttpServletResponse.SC_NOT_FOUND, "Metrics are disabled");
+          return;
+        }
+        if (!canReadMetrics()) {
+          response.sendError(HttpServletResponse.SC_FORBIDDEN, "Metrics are restricted to the System Administrator");
+          return;
+        }
+        writeMetrics(getOpenAPIMetrics(format), format.getContentType(), request, response);
+        return;
+      }
+      String operationId = request.getParameter("operationId");
+      String operationPath = request.getParameter("path");
+      if (operationId != null || operationPath != null) {
+        PathItem.HttpMethod method = EnumUtils.getEnumIgnoreCase(PathItem.HttpMethod.class,
+            StringUtils.defaultIfBlank(request.getParameter("method"), PathItem.HttpMethod.GET.name()));
+        if (method == null) {
+          response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown HTTP method");
+          return;
+        }
+        CachedSpec operation = getOpenAPIOperation(hostAddress, baseUrl, operationId, operationPath, method, format);
+        if (operation == null) {
+          response.sendError(HttpServletResponse.SC_NOT_FOUND, "Operation not found");
+          return;
+        }
+        writeSpec(operation, format.getContentType(), encoding, request, response);
+        return;
+      }
+      if (!OpenAPISpecCache.getInstance().isEnabled() && profile == SpecProfile.FULL) {
+        streamOpenAPISpec(hostAddress, tag, baseUrl, format, encoding, request, response);
+        return;
+      }
+      CachedSpec spec = getOpenAPISpec(hostAddress, tag, baseUrl, false, format, profile);
+      String since = request.getParameter("since");
+      if (StringUtils.isNotBlank(since) && format == SpecFormat.JSON) {
+        SpecCacheKey key = new SpecCacheKey(tag, resolveBaseUrl(hostAddress, baseUrl), false, format,
+            ClientScope.getClientId(), profile);
+        byte[] patch = SpecHistory.getInstance().diff(key, since, spec);
+        if (patch != null) {
+          response.setHeader(SPEC_ETAG_HEADER, spec.getETag());
+          writeSpec(new CachedSpec(patch), JSON_PATCH_CONTENT_TYPE, encoding, request, response);
+          return;
+        }
+      }
+      writeSpec(spec, format.getContentType(), encoding, request, response);
     } catch (Exception e) {
       throw new ServletException("Error initializing OpenAPI", e);
+    } finally {
+      ServerTiming.end();
+    }
+  }
+
+  /**
+   * Writes a serialized specification to the response with its entity tag, or answers 304 Not Modified when the
+   * If-None-Match header matches it.
+   *
+   * @param spec
+   *     the serialized specification
+   * @param contentType
+   *     the media type of the specification
+   * @param encoding
+   *     the content coding accepted by the client
+   * @param request
+   *     The HttpServletRequest object.
+   * @param response
+   *     The HttpServletResponse object.
+   * @throws IOException
+   *     if an error occurs writing the response
+   */
+  private void writeSpec(CachedSpec spec, String contentType, SpecEncoding encoding, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    setServerTiming(response);
+    response.setHeader(ETAG_HEADER, spec.getETag(encoding));
+    response.setHeader(CACHE_CONTROL_HEADER, "no-cache");
+    response.setHeader(VARY_HEADER, VARY_VALUE);
+    if (spec.matches(request.getHeader(IF_NONE_MATCH_HEADER), encoding)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentType(contentType);
+    response.setCharacterEncoding("UTF-8");
+    if (encoding.getContentCoding() != null) {
+      response.setHeader(CONTENT_ENCODING_HEADER, encoding.getContentCoding());
+    }
+    response.setContentLengthLong(spec.getContentLength(encoding));
+    if (!StringUtils.equalsIgnoreCase(HEAD_METHOD, request.getMethod())) {
+      spec.writeTo(encoding, response.getOutputStream());
+      OpenAPIMetrics.getInstance().recordBytesServed(spec.getContentLength(encoding));
+    }
+  }
+
+  /**
+   * Writes the serialized metrics, which must not be stored by clients as they are a live snapshot. They are sent
+   * without entity tag nor content encoding, as they are small and never served twice.
+   *
+   * @param metrics
+   *     the serialized metrics
+   * @param contentType
+   *     the content type of the metrics
+   * @param request
+   *     The HttpServletRequest object.
+   * @param response
+   *     The HttpServletResponse object.
+   * @throws IOException
+   *     if an error occurs while writing the response
+   */
+  private static void writeMetrics(byte[] metrics, String contentType, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    setServerTiming(response);
+    response.setHeader(CACHE_CONTROL_HEADER, "no-store");
+    response.setContentType(contentType);
+    response.setCharacterEncoding("UTF-8");
+    response.setContentLength(metrics.length);
+    if (!StringUtils.equalsIgnoreCase(HEAD_METHOD, request.getMethod())) {
+      response.getOutputStream().write(metrics);
+    }
+  }
+
+  /**
+   * Sends the Server-Timing header of the current request, if it is timed. It must be called before the body is
+   * written, so the phases run while the body is sent are not included.
+   *
+   * @param response
+   *     The HttpServletResponse object.
+   */
+  private static void setServerTiming(HttpServletResponse response) {
+    ServerTiming timing = ServerTiming.getCurrent();
+    if (timing != null) {
+      response.setHeader(ServerTiming.HEADER, timing.toHeader());
+    }
+  }
+
+  /**
+   * Generates the OpenAPI specification and streams it straight to the response, without keeping it in memory.
+   * <p>
+   * Used when the specification cache is disabled, so the response carries no ETag nor Content-Length. The model is
+   * serialized as it is, without the schema deduplication of the cached specifications, which needs the whole
+   * document as a tree. The compact profile needs it too, so it is not streamed.
+   *
+   * @param hostAddress
+   *     the host address for the OpenAPI specification
+   * @param tag
+   *     the tag used to filter endpoints
+   * @param baseUrl
+   *     the base URL for the OpenAPI specification; if null, a default base URL is used
+   * @param format
+   *     the format requested by the client
+   * @param encoding
+   *     the content coding accepted by the client
+   * @param request
+   *     The HttpServletRequest object.
+   * @param response
+   *     The HttpServletResponse object.
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  private void streamOpenAPISpec(String hostAddress, String tag, String baseUrl, SpecFormat format,
+      SpecEncoding encoding, HttpServletRequest request, HttpServletResponse response)
+      throws OpenApiConfigurationException, IOException {
+    ClusterSpecVersions.getInstance().pollIfDue();
+    OpenAPI openAPI = buildOpenAPI(new SpecCacheKey(tag, resolveBaseUrl(hostAddress, baseUrl), false));
+    response.setContentType(format.getContentType());
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader(VARY_HEADER, VARY_VALUE);
+    setServerTiming(response);
+    if (encoding == SpecEncoding.GZIP) {
+      response.setHeader(CONTENT_ENCODING_HEADER, encoding.getContentCoding());
+    }
+    if (StringUtils.equalsIgnoreCase(HEAD_METHOD, request.getMethod())) {
+      return;
     }
+    long start = System.nanoTime();
+    OutputStream out = OpenAPIMetrics.getInstance().countBytesServed(response.getOutputStream());
+    if (encoding == SpecEncoding.GZIP) {
+      GZIPOutputStream gzip = new GZIPOutputStream(out);
+      OpenAPISerializer.write(openAPI, format, gzip);
+      gzip.finish();
+    } else {
+      OpenAPISerializer.write(openAPI, format, out);
+    }
+    out.flush();
+    OpenAPIMetrics.getInstance().record(OpenAPIMetrics.Phase.SERIALIZATION, start);
   }
 
   /**
@@ -122,6 +380,8 @@ public class OpenAPIController implements WebService {
    * This method initializes the OpenAPI object with the given base URL, configures security settings,
    * applies endpoints based on the provided tag, and serializes the OpenAPI object to JSON format.
    * The login endpoint can be optionally excluded from the generated specification.
+   * <p>
+   * Generated specifications are kept in the {@link OpenAPISpecCache} until the flows that define them change.
    *
    * @param hostAddress
    *     the host address for the OpenAPI specification
@@ -139,17 +399,434 @@ public class OpenAPIController implements WebService {
    */
   public String getOpenAPIJson(String hostAddress, String tag,
       String baseUrl, boolean excludeLogin) throws OpenApiConfigurationException, IOException {
-    log.debug("Generating OpenAPI JSON for tag: {}, baseUrl: {}, excludeLogin: {}", tag, baseUrl, excludeLogin);
+    return getOpenAPISpec(hostAddress, tag, baseUrl, excludeLogin).asString();
+  }
+
+  /**
+   * Returns the OpenAPI specification for the specified flow and base URL, generating it if it is not cached.
+   * <p>
+   * Concurrent requests of the same specification share a single generation. Changes done in other nodes of the
+   * cluster are checked first, see {@link ClusterSpecVersions}.
+   *
+   * @param hostAddress
+   *     the host address for the OpenAPI specification
+   * @param tag
+   *     the tag used to filter endpoints
+   * @param baseUrl
+   *     the base URL for the OpenAPI specification; if null, a default base URL is used
+   * @param excludeLogin
+   *     if true, the login endpoint will be excluded from the OpenAPI specification
+   * @return the serialized OpenAPI specification with its entity tag
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  public CachedSpec getOpenAPISpec(String hostAddress, String tag,
+      String baseUrl, boolean excludeLogin) throws OpenApiConfigurationException, IOException {
+    return getOpenAPISpec(hostAddress, tag, baseUrl, excludeLogin, SpecFormat.JSON);
+  }
+
+  /**
+   * Returns the OpenAPI specification for the specified flow and base URL in the given format, generating it if it
+   * is not cached.
+   * <p>
+   * Every format is built from the same endpoint fragments and cached as its own specification, so a format
+   * requested for the first time is only serialized, without running the endpoints again.
+   * <p>
+   * Specifications are cached for the client of the current context, see {@link ClientScope}. JSON specifications
+   * are generated once for every host, with placeholders in the servers block, and rendered for each base URL by
+   * replacing them with its values, see {@link SpecTemplate}.
+   *
+   * @param hostAddress
+   *     the host address for the OpenAPI specification
+   * @param tag
+   *     the tag used to filter endpoints
+   * @param baseUrl
+   *     the base URL for the OpenAPI specification; if null, a default base URL is used
+   * @param excludeLogin
+   *     if true, the login endpoint will be excluded from the OpenAPI specification
+   * @param format
+   *     the format the specification is serialized in
+   * @return the serialized OpenAPI specification with its entity tag
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  public CachedSpec getOpenAPISpec(String hostAddress, String tag, String baseUrl, boolean excludeLogin,
+      SpecFormat format) throws OpenApiConfigurationException, IOException {
+    return getOpenAPISpec(hostAddress, tag, baseUrl, excludeLogin, format, SpecProfile.FULL);
+  }
+
+  /**
+   * Returns the OpenAPI specification for the specified flow and base URL in the given format and profile,
+   * generating it if it is not cached.
+   * <p>
+   * Every profile is serialized from the same endpoint fragments and cached as its own specification.
+   *
+   * @param hostAddress
+   *     the host address for the OpenAPI specification
+   * @param tag
+   *     the tag used to filter endpoints
+   * @param baseUrl
+   *     the base URL for the OpenAPI specification; if null, a default base URL is used
+   * @param excludeLogin
+   *     if true, the login endpoint will be excluded from the OpenAPI specification
+   * @param format
+   *     the format the specification is serialized in
+   * @param profile
+   *     the profile the specification is served in
+   * @return the serialized OpenAPI specification with its entity tag
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  public CachedSpec getOpenAPISpec(String hostAddress, String tag, String baseUrl, boolean excludeLogin,
+      SpecFormat format, SpecProfile profile) throws OpenApiConfigurationException, IOException {
+    ClusterSpecVersions.getInstance().pollIfDue();
+    baseUrl = resolveBaseUrl(hostAddress, baseUrl);
+    SpecCacheKey key = new SpecCacheKey(tag, baseUrl, excludeLogin, format, ClientScope.getClientId(), profile);
+    CachedSpec spec = getCachedSpec(key);
+    SpecHistory.getInstance().record(key, spec);
+    return spec;
+  }
+
+  /**
+   * Generates and caches the JSON specification of the given tags with placeholders in its servers block, which is
+   * rendered for the host of each request. It does not depend on any host, so it can be generated before the first
+   * request, see {@link OpenAPISpecWarmUp}.
+   *
+   * @param tag
+   *     the requested tags, or null for the full specification
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  void cacheOpenAPITemplate(String tag) throws OpenApiConfigurationException, IOException {
+    ClusterSpecVersions.getInstance().pollIfDue();
+    getCachedSpec(new SpecCacheKey(tag, null, false, SpecFormat.JSON, ClientScope.getClientId(), SpecProfile.FULL));
+  }
+
+  private CachedSpec getCachedSpec(SpecCacheKey key) throws OpenApiConfigurationException, IOException {
+    try {
+      return OpenAPISpecCache.getInstance().get(key, () -> loadOrGenerateOpenAPISpec(key));
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof OpenApiConfigurationException) {
+        throw (OpenApiConfigurationException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenApiConfigurationException("Error generating the OpenAPI specification", cause);
+    }
+  }
+
+  /**
+   * Returns the catalog of the tags of the full specification, with the name, description, number of operations and
+   * content hash of each of them, so clients can fetch the specification of each tag only when they need it. The
+   * catalog also has the security schemes and requirements common to every tag.
+   * <p>
+   * The serialized catalog is kept by the {@link OpenAPIEndpointRegistry} until the flows change.
+   *
+   * @param format
+   *     the format the catalog is serialized in
+   * @return the serialized catalog with its entity tag
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  public CachedSpec getOpenAPICatalog(SpecFormat format) throws IOException {
+    ClusterSpecVersions.getInstance().pollIfDue();
+    return OpenAPIEndpointRegistry.getInstance().getTagCatalogDocument(format, this::writeCatalog);
+  }
+
+  private CachedSpec writeCatalog(TagCatalog catalog, SpecFormat format) throws IOException {
+    List<TagCatalog.Entry> tags = new ArrayList<>(catalog.getTags());
+    tags.addAll(getLoginCatalog().getTags());
+    OpenAPI security = new OpenAPI();
+    configureSecurity(security);
+    Map<String, Object> document = new LinkedHashMap<>();
+    document.put("tags", tags);
+    document.put("components",
+        Collections.singletonMap("securitySchemes", security.getComponents().getSecuritySchemes()));
+    document.put("security", security.getSecurity());
+    return new CachedSpec(OpenAPISerializer.getWriter(format).writeValueAsBytes(document));
+  }
+
+  /**
+   * Returns the generation and serving metrics, with the timers of each phase and endpoint contributor, the cache
+   * hits and misses, the bytes served and the global DAL queries, see {@link OpenAPIMetrics}. The same metrics are
+   * published through JMX.
+   *
+   * @param format
+   *     the format the metrics are serialized in
+   * @return the serialized metrics
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  public byte[] getOpenAPIMetrics(SpecFormat format) throws IOException {
+    Map<String, Object> metrics = OpenAPIMetrics.getInstance().getSnapshot();
+    return OpenAPISerializer.getWriter(format).writeValueAsBytes(metrics);
+  }
+
+  /**
+   * Returns a document with a single operation, found by its operation id or by its path and method, together with
+   * the components and security schemes it references and the common info, servers and security of the
+   * specification.
+   * <p>
+   * The operation is looked up in the index the {@link OpenAPIEndpointRegistry} keeps with the fragments of the full
+   * specification, so neither the whole specification nor its serialized form are needed.
+   *
+   * @param hostAddress
+   *     the host address for the OpenAPI specification
+   * @param baseUrl
+   *     the base URL for the OpenAPI specification; if null, a default base URL is used
+   * @param operationId
+   *     the operation id, or null to look the operation up by path and method
+   * @param path
+   *     the path of the operation, used when no operation id is given
+   * @param method
+   *     the HTTP method of the operation, used when no operation id is given
+   * @param format
+   *     the format the document is serialized in
+   * @return the serialized document with its entity tag, or null if the operation does not exist
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  public CachedSpec getOpenAPIOperation(String hostAddress, String baseUrl, String operationId, String path,
+      PathItem.HttpMethod method, SpecFormat format) throws IOException {
+    ClusterSpecVersions.getInstance().pollIfDue();
+    OpenAPIEndpointRegistry registry = OpenAPIEndpointRegistry.getInstance();
+    OpenAPIFragment operation;
+    if (operationId != null) {
+      operation = registry.findOperation(operationId);
+    } else {
+      operation = registry.findOperation(path, method);
+      if (operation == null) {
+        operation = getLoginFragment().extractOperation(path, method);
+      }
+    }
+    if (operation == null) {
+      return null;
+    }
+    baseUrl = resolveBaseUrl(hostAddress, baseUrl);
+    OpenAPI openAPI = new OpenAPI();
+    initializeOpenAPI(openAPI, baseUrl, getServerDescription(baseUrl));
+    configureSecurity(openAPI);
+    operation.mergeInto(openAPI);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OpenAPISerializer.write(openAPI, format, out);
+    return new CachedSpec(out.toByteArray());
+  }
+
+  /**
+   * Loads the specification identified by the given key from its disk snapshot, or generates it and stores its
+   * snapshot if there is none for the current data version.
+   * <p>
+   * JSON specifications with a base URL are rendered from the cached specification without base URL, which is
+   * generated with placeholders in the servers block, see {@link SpecTemplate}.
+   *
+   * @param key
+   *     the tag, base URL and login inclusion of the specification
+   * @return the specification, backed by its snapshot files when snapshots are enabled
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  private CachedSpec loadOrGenerateOpenAPISpec(SpecCacheKey key) throws OpenApiConfigurationException, IOException {
+    String baseUrl = key.getBaseUrl();
+    if (baseUrl != null && key.getFormat() == SpecFormat.JSON) {
+      CachedSpec template = getCachedSpec(new SpecCacheKey(key.getTag(), null, key.isExcludeLogin(),
+          key.getFormat(), key.getClientId(), key.getProfile()));
+      return SERVER_TEMPLATE.render(template, baseUrl, getServerDescription(baseUrl));
+    }
+    SpecSnapshotStore snapshots = SpecSnapshotStore.getInstance();
+    String dataVersion = snapshots.isEnabled() ? FlowDataVersion.getInstance().get() : null;
+    if (dataVersion != null) {
+      CachedSpec spec = snapshots.load(key, dataVersion);
+      if (spec != null) {
+        return spec;
+      }
+    }
+    log.debug("Generating OpenAPI specification for {}", key);
+    CachedSpec spec = new CachedSpec(generateOpenAPISpec(key));
+    return dataVersion != null ? snapshots.store(key, dataVersion, spec) : spec;
+  }
+
+  private String resolveBaseUrl(String hostAddress, String baseUrl) {
     if (baseUrl == null) {
-      baseUrl = String.format(DEFAULT_BASE_URL, hostAddress, getContextName());
+      return String.format(DEFAULT_BASE_URL, hostAddress, getContextName());
+    }
+    return baseUrl;
+  }
+
+  /**
+   * Checks if the current user can read the metrics view, which covers the specifications of every client. Only the
+   * System Administrator role can, unless the {@value OpenAPIProperties#METRICS_PUBLIC} property opens it to every
+   * authenticated user.
+   *
+   * @return true if the metrics can be served, false otherwise
+   */
+  private static boolean canReadMetrics() {
+    if (OpenAPIProperties.getBooleanProperty(OpenAPIProperties.METRICS_PUBLIC, false)) {
+      return true;
+    }
+    OBContext context = OBContext.getOBContext();
+    Role role = context == null ? null : context.getRole();
+    return role != null && SYSTEM_ADMIN_ROLE_ID.equals(role.getId());
+  }
+
+  /**
+   * Checks if the given name is a tag of the registered endpoints or the name of a flow, so a tag parameter with
+   * commas that names a single flow is not split.
+   *
+   * @param name
+   *     the requested name
+   * @return true if the name is a known tag, false otherwise
+   */
+  private static boolean isKnownTag(String name) {
+    if (OpenAPIEndpointRegistry.getInstance().getKnownTags().contains(name)) {
+      return true;
+    }
+    try {
+      OBContext.setAdminMode();
+      OBCriteria<OpenApiFlow> criteria = OBDal.getInstance().createCriteria(OpenApiFlow.class);
+      criteria.add(Restrictions.eq(OpenApiFlow.PROPERTY_NAME, name));
+      return criteria.count() > 0;
+    } finally {
+      OBContext.restorePreviousMode();
+    }
+  }
+
+  /**
+   * Generates the OpenAPI specification identified by the given key, without looking it up in the cache.
+   *
+   * @param key
+   *     the tag, base URL, login inclusion, format and profile of the specification
+   * @return the OpenAPI specification, UTF-8 encoded in the format of the key
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  private byte[] generateOpenAPISpec(SpecCacheKey key) throws OpenApiConfigurationException, IOException {
+    OpenAPIMetrics metrics = OpenAPIMetrics.getInstance();
+    long start = System.nanoTime();
+    long statementCount = metrics.getStatementCount();
+    OpenAPI openAPI = buildOpenAPI(key);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(SERIALIZATION_BUFFER_SIZE);
+    writeOpenAPI(openAPI, key.getFormat(), key.getProfile(), out);
+    metrics.recordDalQueries(statementCount);
+    metrics.record(OpenAPIMetrics.Phase.GENERATION, start);
+    return out.toByteArray();
+  }
+
+  /**
+   * Serializes a specification, moving its repeated schemas into components first unless the
+   * {@value OpenAPIProperties#SCHEMA_DEDUPLICATION} property disables it, see {@link SchemaDeduplicator}. The
+   * compact profile removes the examples and descriptions before, see {@link SpecCompactor}, so the schemas that only
+   * differed in them are moved too.
+   *
+   * @param openAPI
+   *     the specification
+   * @param format
+   *     the format the specification is serialized in
+   * @param profile
+   *     the profile the specification is served in
+   * @param out
+   *     the stream where the specification is written, it is not closed
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  private static void writeOpenAPI(OpenAPI openAPI, SpecFormat format, SpecProfile profile, OutputStream out)
+      throws IOException {
+    long start = System.nanoTime();
+    boolean deduplicate = OpenAPIProperties.getBooleanProperty(OpenAPIProperties.SCHEMA_DEDUPLICATION, true);
+    if (!deduplicate && profile == SpecProfile.FULL) {
+      OpenAPISerializer.write(openAPI, format, out);
+    } else {
+      ObjectNode document = (ObjectNode) OpenAPISerializer.toTree(openAPI);
+      if (profile == SpecProfile.COMPACT) {
+        SpecCompactor.compact(document);
+      }
+      if (deduplicate) {
+        SchemaDeduplicator.deduplicate(document);
+      }
+      OpenAPISerializer.write(document, format, out);
+    }
+    OpenAPIMetrics.getInstance().record(OpenAPIMetrics.Phase.SERIALIZATION, start);
+  }
+
+  /**
+   * Builds the OpenAPI model identified by the given key.
+   * <p>
+   * The documentation of the endpoints is merged from the fragments kept by the {@link OpenAPIEndpointRegistry}, so
+   * only the endpoints whose fragments were invalidated are run.
+   *
+   * @param key
+   *     the tag, base URL and login inclusion of the specification, without base URL to write placeholders in the
+   *     servers block
+   * @return the OpenAPI model
+   * @throws OpenApiConfigurationException
+   *     if an error occurs during OpenAPI configuration
+   */
+  private OpenAPI buildOpenAPI(SpecCacheKey key) throws OpenApiConfigurationException {
+    OpenAPIMetrics metrics = OpenAPIMetrics.getInstance();
+    long start = System.nanoTime();
+    OpenAPI openAPI = ScannedOpenAPIDefinition.newDocument();
+    metrics.record(OpenAPIMetrics.Phase.READER_SCAN, start);
+    start = System.nanoTime();
+    String baseUrl = key.getBaseUrl();
+    if (baseUrl != null) {
+      initializeOpenAPI(openAPI, baseUrl, getServerDescription(baseUrl));
+    } else {
+      initializeOpenAPI(openAPI, BASE_URL_PLACEHOLDER, SERVER_DESCRIPTION_PLACEHOLDER);
     }
-    OpenAPI openAPI = initializeOpenAPI(baseUrl);
-    configureSecurity(openAPI, baseUrl);
-    openAPI = applyEndpoints(openAPI, tag);
-    if (!excludeLogin) {
+    metrics.record(OpenAPIMetrics.Phase.INIT, start);
+    start = System.nanoTime();
+    configureSecurity(openAPI);
+    metrics.record(OpenAPIMetrics.Phase.SECURITY, start);
+    start = System.nanoTime();
+    applyEndpoints(openAPI, key.getTags());
+    metrics.record(OpenAPIMetrics.Phase.ENDPOINTS, start);
+    if (!key.isExcludeLogin()) {
+      start = System.nanoTime();
+      getLoginFragment().mergeInto(openAPI);
+      metrics.record(OpenAPIMetrics.Phase.LOGIN, start);
+    }
+    return openAPI;
+  }
+
+  /**
+   * Returns the fragment with the login endpoint, which does not depend on the request, building it the first time.
+   *
+   * @return the login fragment
+   */
+  private OpenAPIFragment getLoginFragment() {
+    OpenAPIFragment fragment = loginFragment;
+    if (fragment == null) {
+      OpenAPI openAPI = new OpenAPI();
       addLoginEndpoint(openAPI);
+      fragment = OpenAPIFragment.from(openAPI);
+      loginFragment = fragment;
+    }
+    return fragment;
+  }
+
+  private TagCatalog getLoginCatalog() {
+    TagCatalog catalog = loginCatalog;
+    if (catalog == null) {
+      catalog = TagCatalog.build(List.of(getLoginFragment()));
+      loginCatalog = catalog;
     }
-    return serializeOpenAPI(openAPI);
+    return catalog;
   }
 
   private void addLoginEndpoint(OpenAPI openAPI) {
@@ -330,19 +1007,25 @@ public class OpenAPIController implements WebService {
   /**
    * Initializes the OpenAPI configuration for the Etendo API Headless.
    *
+   * @param openAPI
+   *     the OpenAPI object to configure with the API information, license, external documentation, and server details
    * @param baseUrl
    *     the base URL for the API server
-   * @return an instance of {@link OpenAPI} configured with the API information, license, external documentation, and server details
+   * @param serverDescription
+   *     the description of the API server
    */
-  private OpenAPI initializeOpenAPI(String baseUrl) {
-    return new OpenAPI().info(new Info().title("Etendo API Headless")
+  private void initializeOpenAPI(OpenAPI openAPI, String baseUrl, String serverDescription) {
+    openAPI.info(new Info().title("Etendo API Headless")
             .description("OpenAPI definition for Etendo API Headless")
             .version("1.0.0")
             .license(new License().name("Apache 2.0").url("http://springdoc.org")))
         .externalDocs(new ExternalDocumentation().description("GitHub repository")
             .url("https://github.com/etendosoftware/etendo_core"))
-        .servers(Collections.singletonList(new Server().url(baseUrl).description(
-            (StringUtils.containsIgnoreCase(baseUrl, "localhost") ? "Etendo Classic Server" : "Local Server"))));
+        .servers(new ArrayList<>(List.of(new Server().url(baseUrl).description(serverDescription))));
+  }
+
+  private static String getServerDescription(String baseUrl) {
+    return StringUtils.containsIgnoreCase(baseUrl, "localhost") ? "Etendo Classic Server" : "Local Server";
   }
 
   /**
@@ -353,24 +1036,17 @@ public class OpenAPIController implements WebService {
    *
    * @param openAPI
    *     the OpenAPI object to configure
-   * @param baseUrl
-   *     the base URL for the OpenAPI specification
    */
-  private void configureSecurity(OpenAPI openAPI, String baseUrl) {
-    Components components = new Components().addSecuritySchemes("basicAuth",
-        createSecuritySchema("basic", null, BASIC_AUTH_DESCRIPTION));
+  private void configureSecurity(OpenAPI openAPI) {
+    Components components = openAPI.getComponents() != null ? openAPI.getComponents() : new Components();
+    components.addSecuritySchemes("basicAuth", createSecuritySchema("basic", null, BASIC_AUTH_DESCRIPTION));
     openAPI.components(components);
 
-    SecurityScheme bearerAuthScheme = createSecuritySchema("bearer", "JWT",
-        String.format(BEARER_TOKEN_DESCRIPTION, baseUrl));
+    SecurityScheme bearerAuthScheme = createSecuritySchema("bearer", "JWT", BEARER_TOKEN_DESCRIPTION);
     openAPI.components(components.addSecuritySchemes("bearerAuth", bearerAuthScheme));
 
     SecurityRequirement securityRequirement = new SecurityRequirement().addList("bearerAuth");
-    openAPI.addSecurityItem(securityRequirement);
-
-    openAPI.setSecurity(
-        Collections.singletonList(securityRequirement)
-    );
+    openAPI.setSecurity(new ArrayList<>(List.of(securityRequirement)));
   }
 
 
@@ -401,39 +1077,25 @@ public class OpenAPIController implements WebService {
     return result;
   }
 
-  private OpenAPI applyEndpoints(OpenAPI openAPI, String tag) throws OpenApiConfigurationException {
-    Set<String> resourcePackages = new HashSet<>();
-    resourcePackages.add(RESOURCE_PACKAGE);
-
-    SwaggerConfiguration oasConfig = new SwaggerConfiguration().openAPI(openAPI)
-        .resourcePackages(resourcePackages);
-
-    OpenApiContext ctx = new GenericOpenApiContext<>().openApiConfiguration(oasConfig).init();
-    OpenAPI updatedOpenAPI = ctx.read();
-
-    for (OpenAPIEndpoint endpoint : WeldUtils.getInstances(OpenAPIEndpoint.class)) {
-      if (tag == null || endpoint.isValid(tag)) {
-        endpoint.add(updatedOpenAPI);
-      }
-    }
-    return updatedOpenAPI;
-  }
-
   /**
-   * Serializes the OpenAPI object to a JSON string.
+   * Merges the fragments of the requested tags into the document. When several tags are requested, the fragments of
+   * each tag are merged in turn, so the fragments kept for each single tag are reused and the components shared by
+   * several of them are added once.
    *
    * @param openAPI
-   *     The OpenAPI object to serialize.
-   * @return The serialized JSON string.
-   * @throws IOException
-   *     If an I/O error occurs during serialization.
+   *     the document to add the endpoints to
+   * @param tags
+   *     the requested tags, empty for the full specification
    */
-  private String serializeOpenAPI(OpenAPI openAPI) throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-    String output = mapper.writeValueAsString(openAPI);
-    output = output.replace("\"type\":\"HTTP\"", "\"type\":\"http\"");
-    return output;
+  private void applyEndpoints(OpenAPI openAPI, Set<String> tags) {
+    OpenAPIEndpointRegistry registry = OpenAPIEndpointRegistry.getInstance();
+    if (tags.isEmpty()) {
+      registry.getFragments(null).forEach(fragment -> fragment.mergeInto(openAPI));
+      return;
+    }
+    for (String tag : tags) {
+      registry.getFragments(tag).forEach(fragment -> fragment.mergeInto(openAPI));
+    }
   }
 
   private String getContextName() {
@@ -4,20 +4,26 @@ import static org.apache.commons.lang3.BooleanUtils.isTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 import org.openbravo.dal.core.OBContext;
+import org.openbravo.dal.service.OBCriteria;
 import org.openbravo.dal.service.OBDal;
 
 import com.etendoerp.openapi.data.OpenAPIRequest;
 import com.etendoerp.openapi.data.OpenApiFlow;
 import com.etendoerp.openapi.data.OpenApiFlowPoint;
+import com.etendoerp.openapi.metrics.OpenAPIMetrics;
 import com.etendoerp.openapi.model.OpenAPIEndpoint;
 
 import io.swagger.v3.oas.models.OpenAPI;
@@ -29,6 +35,8 @@ import io.swagger.v3.oas.models.tags.Tag;
  * Abstract class that adds OpenAPI documentation for the default endpoints. A default endpoint is an endpoint that is
  * not documented by another OpenAPIEndpoint implementation. This abstract class adds the endpoints to the "Default" tag
  * and to the tags of the flows where the endpoints are related.
+ * <p>
+ * Only the flows of the client of the current context and the system flows are documented, see {@link ClientScope}.
  */
 public abstract class OpenAPIDefaultRequest implements OpenAPIEndpoint {
   public static final String DEFAULT_TAG = "Default";
@@ -58,69 +66,78 @@ public abstract class OpenAPIDefaultRequest implements OpenAPIEndpoint {
 
   private static final Logger log = Logger.getLogger(OpenAPIDefaultRequest.class);
 
-  private ThreadLocal<String> requestedTag = new ThreadLocal<>();
+  private static final String FLOW_ALIAS = "flow";
+  private static final String REQUEST_ALIAS = "request";
+
+  private ThreadLocal<Set<String>> requestedTags = new ThreadLocal<>();
 
 
   /**
-   * Retrieves a list of OpenApiFlow objects.
+   * Retrieves the flows documented for the client of the current context: its own flows and the system ones, or every
+   * flow when the specification is not scoped to a client.
    *
+   * @param names
+   *     the names of the flows to retrieve, or null to retrieve every flow
    * @return a list of OpenApiFlow objects.
    */
-  private List<OpenApiFlow> getFlows() {
-    return OBDal.getInstance().createCriteria(OpenApiFlow.class).list();
+  private List<OpenApiFlow> getScopedFlows(Set<String> names) {
+    long start = System.nanoTime();
+    OBCriteria<OpenApiFlow> criteria = OBDal.getInstance().createCriteria(OpenApiFlow.class);
+    String clientId = ClientScope.getClientId();
+    if (clientId != null) {
+      criteria.add(
+          Restrictions.in(OpenApiFlow.PROPERTY_CLIENT + ".id", ClientScope.SYSTEM_CLIENT_ID, clientId));
+    }
+    if (names != null) {
+      criteria.add(Restrictions.in(OpenApiFlow.PROPERTY_NAME, names));
+    }
+    List<OpenApiFlow> flows = criteria.list();
+    OpenAPIMetrics.getInstance().record(OpenAPIMetrics.Phase.FLOWS, start);
+    return flows;
   }
 
   /**
    * Retrieves a list of tags, this tags are the tags where this class will add the endpoints. In general, this list is
    * a list of the flows where the endpoints added by this class are related. Addionally, a "generic" tag is added to
    * allow the user to see the endpoints of this class.
+   * <p>
+   * The names of the active flows with a request of the classes of this class are loaded in a single query, joining
+   * the flow points with their flows and requests.
    *
    * @return a list of tags.
    */
   private List<String> getTags() {
-    Set<String> tags = getFlows().stream().filter(this::flowHasDefaultRequests).map(OpenApiFlow::getName).collect(
-        Collectors.toSet());
+    long start = System.nanoTime();
+    OBCriteria<OpenApiFlowPoint> criteria = OBDal.getInstance().createCriteria(OpenApiFlowPoint.class);
+    criteria.createAlias(OpenApiFlowPoint.PROPERTY_ETAPIOPENAPIFLOW, FLOW_ALIAS);
+    criteria.createAlias(OpenApiFlowPoint.PROPERTY_ETAPIOPENAPIREQ, REQUEST_ALIAS);
+    criteria.setFilterOnActive(false);
+    criteria.add(Restrictions.eq(FLOW_ALIAS + "." + OpenApiFlow.PROPERTY_ACTIVE, true));
+    criteria.add(Restrictions.in(REQUEST_ALIAS + "." + OpenAPIRequest.PROPERTY_CLASSNAME, getClassNames()));
+    criteria.setProjection(Projections.distinct(Projections.property(FLOW_ALIAS + "." + OpenApiFlow.PROPERTY_NAME)));
+    Set<String> tags = new TreeSet<>();
+    for (Object name : criteria.list()) {
+      if (name != null) {
+        tags.add((String) name);
+      }
+    }
+    OpenAPIMetrics.getInstance().record(OpenAPIMetrics.Phase.FLOWS, start);
     tags.add(DEFAULT_TAG);
-    return tags.stream().sorted().collect(Collectors.toList());
+    return new ArrayList<>(tags);
   }
 
-  /**
-   * Checks if the given OpenApiFlow has any default requests.
-   * <p>
-   * This method iterates over the list of OpenApiFlowPoint objects associated with the given OpenApiFlow,
-   * retrieves the OpenAPIRequest for each flow point, and checks if any of the requests match the classes
-   * defined in this class.
-   *
-   * @param flow
-   *     the OpenApiFlow object to check for default requests
-   * @return true if any of the OpenAPIRequest objects match the classes, false otherwise
-   */
-  private boolean flowHasDefaultRequests(OpenApiFlow flow) {
-    return flow.getETAPIOpenApiFlowPointList().stream()
-        .map(OpenApiFlowPoint::getEtapiOpenapiReq)
-        .anyMatch(this::matchesClass);
+  private List<String> getClassNames() {
+    return Arrays.stream(getClasses()).map(Class::getName).collect(Collectors.toList());
   }
 
   /**
-   * Checks if the given OpenAPIRequest matches any class in the list of classes.
-   * <p>
-   * This method iterates over the classes and checks if the class name matches the classname of the provided OpenAPIRequest.
-   *
-   * @param etapiOpenapiReq
-   *     the OpenAPIRequest object to check
-   * @return true if the classname of the OpenAPIRequest matches any class name, false otherwise
-   */
-  private boolean matchesClass(OpenAPIRequest etapiOpenapiReq) {
-    return Arrays.stream(getClasses())
-        .anyMatch(clazz -> StringUtils.equalsIgnoreCase(etapiOpenapiReq.getClassname(), clazz.getName()));
-  }
-
-  /**
-   * Check if the requested tag, if any, is contained in the list of valid tags where this class can add endpoints.
+   * Check if any of the requested tags, if any, is contained in the list of valid tags where this class can add
+   * endpoints. Several comma separated tags can be requested, the valid ones are kept for {@link #add(OpenAPI)}. A tag
+   * that is a flow name as a whole is not split, even if the name contains commas.
    *
    * @param tag
-   *     the tag to check.
-   * @return true if the tag is valid, false otherwise.
+   *     the tag, or comma separated tags, to check.
+   * @return true if any of the tags is valid, false otherwise.
    */
   @Override
   public boolean isValid(String tag) {
@@ -129,8 +146,13 @@ public abstract class OpenAPIDefaultRequest implements OpenAPIEndpoint {
       if (tag == null) {
         return true;
       }
-      if (getTags().contains(tag)) {
-        requestedTag.set(tag);
+      List<String> validTags = getTags();
+      Set<String> tags = RequestedTags.split(tag, validTags::contains)
+          .stream()
+          .filter(validTags::contains)
+          .collect(Collectors.toSet());
+      if (!tags.isEmpty()) {
+        requestedTags.set(tags);
         return true;
       }
       return false;
@@ -140,25 +162,88 @@ public abstract class OpenAPIDefaultRequest implements OpenAPIEndpoint {
   }
 
   /**
-   * Adds OpenAPI documentation for the requested tags.
+   * Returns the tags where this class adds endpoints: the flows related to its classes and the default tag.
+   *
+   * @return the supported tags.
+   */
+  @Override
+  public Collection<String> getSupportedTags() {
+    try {
+      OBContext.setAdminMode();
+      return getTags();
+    } finally {
+      OBContext.restorePreviousMode();
+    }
+  }
+
+  /**
+   * The documented flows depend on the client of the current context.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isClientScoped() {
+    return true;
+  }
+
+  /**
+   * Adds OpenAPI documentation for the tags accepted by the last call to {@link #isValid(String)} in this thread.
    *
    * @param openAPI
    *     the OpenAPI object to add documentation to.
    */
   @Override
   public void add(OpenAPI openAPI) {
+    try {
+      addFlows(openAPI, requestedTags.get());
+    } finally {
+      requestedTags.remove();
+    }
+  }
+
+  /**
+   * Adds OpenAPI documentation for the requested tag.
+   *
+   * @param openAPI
+   *     the OpenAPI object to add documentation to.
+   * @param tag
+   *     the requested tag, or comma separated tags unless it is a flow name as a whole, or null to add the
+   *     documentation of every flow.
+   */
+  @Override
+  public void add(OpenAPI openAPI, String tag) {
+    if (tag == null) {
+      addFlows(openAPI, null);
+      return;
+    }
+    try {
+      OBContext.setAdminMode();
+      addFlows(openAPI, RequestedTags.split(tag, name -> getTags().contains(name)));
+    } finally {
+      OBContext.restorePreviousMode();
+    }
+  }
+
+  /**
+   * Adds OpenAPI documentation for the flows with the given names.
+   *
+   * @param openAPI
+   *     the OpenAPI object to add documentation to.
+   * @param tags
+   *     the names of the flows to document, or null to add the documentation of every flow.
+   */
+  private void addFlows(OpenAPI openAPI, Set<String> tags) {
     try {
       OBContext.setAdminMode();
       HashMap<String, String> descriptions = new HashMap<>();
       AtomicBoolean addedEndpoints = new AtomicBoolean(false);
-      getFlows().forEach(flow -> {
-        if (requestedTag.get() == null || StringUtils.equals(requestedTag.get(), flow.getName())) {
+      getScopedFlows(tags).forEach(flow -> {
+        if (tags == null || tags.contains(flow.getName())) {
           processFlowEndpoints(openAPI, flow, descriptions, addedEndpoints);
           addFlowTag(openAPI, flow);
         }
       });
     } finally {
-      requestedTag.remove();
       OBContext.restorePreviousMode();
     }
   }
@@ -0,0 +1,201 @@
+package com.etendoerp.openapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.dal.core.SessionHandler;
+
+import com.etendoerp.openapi.metrics.ServerTiming;
+
+/**
+ * Runs the tasks of a specification generation in a bounded fork/join pool shared by all the requests.
+ * <p>
+ * Each task runs with the {@link OBContext} of the calling thread and in its own DAL session, which is rolled back
+ * and closed when the task ends, as tasks only read data. A task run by a thread that already has a DAL session, such
+ * as the calling thread or a worker running another task while it waits for it, uses that session and leaves it, and
+ * the context of the thread, as they were. Their phases are added to the {@link ServerTiming} of the calling thread.
+ * The pool size is set with the {@value OpenAPIProperties#GENERATION_PARALLELISM} property and defaults to the number
+ * of available processors.
+ * <p>
+ * Background tasks run in their own thread, so they do not take the workers of the pool from the requests.
+ */
+public final class OpenAPIGenerationExecutor {
+
+  private static final Logger log = LogManager.getLogger(OpenAPIGenerationExecutor.class);
+
+  private static ForkJoinPool pool;
+  private static ExecutorService backgroundExecutor;
+  private static boolean initialized;
+  private static final ThreadLocal<Boolean> inline = new ThreadLocal<>();
+
+  private OpenAPIGenerationExecutor() {
+  }
+
+  /**
+   * Runs the given tasks and returns their results in the same order as the tasks.
+   * <p>
+   * The tasks are run in the calling thread when there is only one of them, when the parallelism is 1 or when they
+   * are given by a task run with {@link #runInline(Supplier)}. Exceptions thrown by a task are rethrown once all the
+   * tasks have finished.
+   *
+   * @param tasks
+   *     the tasks to run, which must not depend on each other
+   * @param <T>
+   *     the type of the results
+   * @return the results of the tasks
+   */
+  public static <T> List<T> invokeAll(List<? extends Supplier<T>> tasks) {
+    List<T> results = new ArrayList<>(tasks.size());
+    ForkJoinPool executor = tasks.size() > 1 && inline.get() == null ? getPool() : null;
+    if (executor == null) {
+      for (Supplier<T> task : tasks) {
+        results.add(task.get());
+      }
+      return results;
+    }
+    OBContext context = OBContext.getOBContext();
+    List<ForkJoinTask<T>> submitted = new ArrayList<>(tasks.size());
+    for (Supplier<T> task : tasks) {
+      Supplier<T> timedTask = ServerTiming.wrap(task);
+      submitted.add(executor.submit(() -> runInContext(context, timedTask)));
+    }
+    RuntimeException failure = null;
+    for (ForkJoinTask<T> task : submitted) {
+      try {
+        results.add(task.join());
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return results;
+  }
+
+  /**
+   * Runs a task in the background thread with the {@link OBContext} of the calling thread. The tasks are run one at a
+   * time, in the order they are given.
+   *
+   * @param task
+   *     the task to run
+   */
+  public static void execute(Runnable task) {
+    OBContext context = OBContext.getOBContext();
+    getBackgroundExecutor().execute(() -> runInContext(context, () -> {
+      task.run();
+      return null;
+    }));
+  }
+
+  /**
+   * Runs a task in the current thread, running in that thread too the tasks it gives to
+   * {@link #invokeAll(List)}, so the task does not use the workers of the pool. It is meant for the background work
+   * whose parallelism is bounded on its own, such as the warm-up.
+   *
+   * @param task
+   *     the task to run
+   * @param <T>
+   *     the type of the result
+   * @return the result of the task
+   */
+  public static <T> T runInline(Supplier<T> task) {
+    Boolean previous = inline.get();
+    inline.set(Boolean.TRUE);
+    try {
+      return task.get();
+    } finally {
+      if (previous == null) {
+        inline.remove();
+      }
+    }
+  }
+
+  /**
+   * Runs a task in the current thread with the given context, closing the DAL session it opens and restoring the
+   * previous context of the thread when it ends. When the thread already has a DAL session, the task uses it and the
+   * session is left open, so a task run inline by the thread that submitted it does not close the session of its
+   * request.
+   *
+   * @param context
+   *     the context of the task, can be null
+   * @param task
+   *     the task to run
+   * @param <T>
+   *     the type of the result
+   * @return the result of the task
+   */
+  static <T> T runInContext(OBContext context, Supplier<T> task) {
+    OBContext previousContext = OBContext.getOBContext();
+    boolean ownSession = !SessionHandler.isSessionHandlerPresent();
+    OBContext.setOBContext(context);
+    try {
+      return task.get();
+    } finally {
+      try {
+        if (ownSession && SessionHandler.isSessionHandlerPresent()) {
+          SessionHandler.getInstance().rollback();
+        }
+      } catch (Exception e) {
+        log.warn("Error closing the session of an OpenAPI generation task", e);
+      } finally {
+        if (ownSession) {
+          SessionHandler.deleteSessionHandler();
+        }
+        OBContext.setOBContext(previousContext);
+      }
+    }
+  }
+
+  /**
+   * Returns the pool, creating it the first time, or null if the tasks must run in the calling thread.
+   *
+   * @return the pool, or null if the parallelism is 1 or lower
+   */
+  private static synchronized ForkJoinPool getPool() {
+    if (!initialized) {
+      int parallelism = (int) Math.min(Integer.MAX_VALUE, OpenAPIProperties.getLongProperty(
+          OpenAPIProperties.GENERATION_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+      if (parallelism > 1) {
+        pool = new ForkJoinPool(parallelism, OpenAPIGenerationExecutor::newThread, null, false);
+        log.debug("Generating OpenAPI specifications with {} threads", parallelism);
+      }
+      initialized = true;
+    }
+    return pool;
+  }
+
+  /**
+   * Returns the executor of the background tasks, a single thread apart from the pool, creating it the first time.
+   *
+   * @return the background executor
+   */
+  private static synchronized Executor getBackgroundExecutor() {
+    if (backgroundExecutor == null) {
+      backgroundExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "openapi-background");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return backgroundExecutor;
+  }
+
+  private static ForkJoinWorkerThread newThread(ForkJoinPool forkJoinPool) {
+    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+    thread.setName("openapi-generation-" + thread.getPoolIndex());
+    return thread;
+  }
+}
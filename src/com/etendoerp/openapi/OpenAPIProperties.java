@@ -0,0 +1,167 @@
+package com.etendoerp.openapi;
+
+import java.util.Properties;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.session.OBPropertiesProvider;
+
+/**
+ * Utility class to read the OpenAPI module settings from Openbravo.properties.
+ * <p>
+ * Every setting is optional, when it is not defined or it has an invalid value the provided default is used.
+ */
+public class OpenAPIProperties {
+
+  /**
+   * Maximum size, in bytes, of the generated specifications kept in memory.
+   */
+  public static final String CACHE_MAX_SIZE = "etapi.openapi.cache.maxSize";
+
+  /**
+   * Whether invalidated specifications are served while they are regenerated in the background. Disabled by
+   * default.
+   */
+  public static final String CACHE_STALE_WHILE_REVALIDATE = "etapi.openapi.cache.staleWhileRevalidate";
+
+  /**
+   * Time, in milliseconds, a request waits for the regeneration of a stale specification before being served the
+   * previous one. Generations taking longer are logged. Defaults to 0, serving the previous one right away.
+   */
+  public static final String CACHE_TIME_BUDGET = "etapi.openapi.cache.timeBudget";
+
+  /**
+   * Minimum time, in milliseconds, between two reads of the OpenAPI versions changed by other nodes of the cluster.
+   * Defaults to 5 seconds, 0 disables the reads.
+   */
+  public static final String CLUSTER_POLL_INTERVAL = "etapi.openapi.cluster.pollInterval";
+
+  /**
+   * Number of recent versions of each JSON specification kept to serve patches between them. Defaults to 4, 0
+   * disables the patches.
+   */
+  public static final String HISTORY_SIZE = "etapi.openapi.history.size";
+
+  /**
+   * Maximum size, in bytes, of the compressed recent versions kept for all the specifications. Defaults to 8 MB.
+   */
+  public static final String HISTORY_MAX_SIZE = "etapi.openapi.history.maxSize";
+
+  /**
+   * Whether the schemas repeated in a specification are moved into its components and referenced, see
+   * {@link com.etendoerp.openapi.model.SchemaDeduplicator}. Enabled by default.
+   */
+  public static final String SCHEMA_DEDUPLICATION = "etapi.openapi.schemas.deduplicate";
+
+  /**
+   * Whether the generated specifications are kept on disk, so they survive restarts. Disabled by default.
+   */
+  public static final String SNAPSHOT_ENABLED = "etapi.openapi.snapshot.enabled";
+
+  /**
+   * Directory of the specification snapshots. Defaults to an openapi-snapshots directory inside attach.path.
+   */
+  public static final String SNAPSHOT_DIR = "etapi.openapi.snapshot.dir";
+
+  /**
+   * Name of the node directory inside the snapshot directory, so the nodes sharing it do not remove the snapshots of
+   * each other. Defaults to the host name.
+   */
+  public static final String SNAPSHOT_NODE = "etapi.openapi.snapshot.node";
+
+  /**
+   * Maximum number of threads building the endpoint fragments of a specification. 1 builds them in the request
+   * thread.
+   */
+  public static final String GENERATION_PARALLELISM = "etapi.openapi.generation.parallelism";
+
+  /**
+   * Whether the specifications are generated in the background when the application starts. Disabled by default.
+   */
+  public static final String WARMUP_ENABLED = "etapi.openapi.warmup.enabled";
+
+  /**
+   * Maximum number of specifications generated at the same time by the startup warm-up. Defaults to 1.
+   */
+  public static final String WARMUP_PARALLELISM = "etapi.openapi.warmup.parallelism";
+
+  /**
+   * Whether the generation and serving metrics are recorded and published through JMX, see
+   * {@link com.etendoerp.openapi.metrics.OpenAPIMetrics}. Enabled by default.
+   */
+  public static final String METRICS_ENABLED = "etapi.openapi.metrics.enabled";
+
+  /**
+   * Whether the metrics view of the controller is served to every authenticated user instead of only to the System
+   * Administrator role. Disabled by default.
+   */
+  public static final String METRICS_PUBLIC = "etapi.openapi.metrics.public";
+
+  /**
+   * Whether the responses of the specifications carry a Server-Timing header with the duration of the phases run to
+   * answer them, see {@link com.etendoerp.openapi.metrics.ServerTiming}. Disabled by default.
+   */
+  public static final String SERVER_TIMING_ENABLED = "etapi.openapi.serverTiming.enabled";
+
+  private static final Logger log = LogManager.getLogger(OpenAPIProperties.class);
+
+  private OpenAPIProperties() {
+  }
+
+  /**
+   * Reads a property from Openbravo.properties.
+   *
+   * @param name
+   *     the property name
+   * @return the trimmed property value, or null if it is not defined or the properties are not available
+   */
+  public static String getProperty(String name) {
+    OBPropertiesProvider provider = OBPropertiesProvider.getInstance();
+    Properties properties = provider == null ? null : provider.getOpenbravoProperties();
+    if (properties == null) {
+      return null;
+    }
+    return StringUtils.trimToNull(properties.getProperty(name));
+  }
+
+  /**
+   * Reads a boolean property from Openbravo.properties.
+   *
+   * @param name
+   *     the property name
+   * @param defaultValue
+   *     the value returned when the property is not defined
+   * @return true if the property value is "true", "yes", "on" or "y", ignoring case
+   */
+  public static boolean getBooleanProperty(String name, boolean defaultValue) {
+    String value = getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    return BooleanUtils.toBoolean(value);
+  }
+
+  /**
+   * Reads a numeric property from Openbravo.properties.
+   *
+   * @param name
+   *     the property name
+   * @param defaultValue
+   *     the value returned when the property is not defined or is not a valid number
+   * @return the property value
+   */
+  public static long getLongProperty(String name, long defaultValue) {
+    String value = getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      log.warn("Invalid value '{}' for property {}, using {}", value, name, defaultValue);
+      return defaultValue;
+    }
+  }
+}
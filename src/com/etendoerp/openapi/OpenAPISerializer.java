@@ -0,0 +1,151 @@
+package com.etendoerp.openapi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.etendoerp.openapi.cache.SpecFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+
+/**
+ * Serializes OpenAPI models as JSON or YAML.
+ * <p>
+ * The writers are configured once and shared, as it is immutable and thread-safe, so Jackson keeps its serializers
+ * for the swagger model classes between requests instead of introspecting them every time. Mixins adapt the swagger
+ * models to the OpenAPI format: security scheme types are written with their lowercase names and the internal
+ * example flags are not written. YAML is written by a streaming generator with the same configuration, so both
+ * formats contain the same document.
+ */
+public class OpenAPISerializer {
+
+  private static final ObjectMapper MAPPER = createMapper(new ObjectMapper());
+  private static final ObjectWriter WRITER = MAPPER.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  private static final ObjectMapper YAML_MAPPER = createMapper(new ObjectMapper(YAMLFactory.builder()
+      .enable(YAMLGenerator.Feature.MINIMIZE_QUOTES)
+      .enable(YAMLGenerator.Feature.ALWAYS_QUOTE_NUMBERS_AS_STRINGS)
+      .disable(YAMLGenerator.Feature.SPLIT_LINES)
+      .build()));
+  private static final ObjectWriter YAML_WRITER = YAML_MAPPER.writer()
+      .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  private OpenAPISerializer() {
+  }
+
+  private static ObjectMapper createMapper(ObjectMapper mapper) {
+    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    mapper.addMixIn(SecurityScheme.Type.class, SecuritySchemeTypeMixin.class);
+    mapper.addMixIn(Schema.class, ExampleSetFlagMixin.class);
+    mapper.addMixIn(MediaType.class, ExampleSetFlagMixin.class);
+    return mapper;
+  }
+
+  /**
+   * Returns the shared writer used to serialize OpenAPI models.
+   *
+   * @return the preconfigured JSON writer
+   */
+  public static ObjectWriter getWriter() {
+    return WRITER;
+  }
+
+  /**
+   * Returns the shared writer used to serialize OpenAPI models in the given format.
+   *
+   * @param format
+   *     the output format
+   * @return the preconfigured writer of the format
+   */
+  public static ObjectWriter getWriter(SpecFormat format) {
+    return format == SpecFormat.YAML ? YAML_WRITER : WRITER;
+  }
+
+  /**
+   * Converts an OpenAPI model object into a JSON tree, as it would be serialized.
+   *
+   * @param value
+   *     the model object to convert
+   * @return the JSON tree of the object
+   */
+  public static JsonNode toTree(Object value) {
+    return MAPPER.valueToTree(value);
+  }
+
+  /**
+   * Serializes the OpenAPI object as JSON, streaming it to the given output. The output is not closed, so it can be
+   * the response stream.
+   *
+   * @param openAPI
+   *     the OpenAPI object to serialize
+   * @param out
+   *     the stream where the UTF-8 encoded JSON is written
+   * @throws IOException
+   *     if an I/O error occurs during serialization
+   */
+  public static void write(OpenAPI openAPI, OutputStream out) throws IOException {
+    WRITER.writeValue(out, openAPI);
+  }
+
+  /**
+   * Serializes the OpenAPI object in the given format, streaming it to the given output. The output is not closed,
+   * so it can be the response stream.
+   *
+   * @param openAPI
+   *     the OpenAPI object to serialize
+   * @param format
+   *     the output format
+   * @param out
+   *     the stream where the UTF-8 encoded document is written
+   * @throws IOException
+   *     if an I/O error occurs during serialization
+   */
+  public static void write(OpenAPI openAPI, SpecFormat format, OutputStream out) throws IOException {
+    getWriter(format).writeValue(out, openAPI);
+  }
+
+  /**
+   * Serializes the JSON tree of a specification in the given format, streaming it to the given output. The output
+   * is not closed, so it can be the response stream.
+   *
+   * @param document
+   *     the JSON tree of the specification, as returned by {@link #toTree(Object)}
+   * @param format
+   *     the output format
+   * @param out
+   *     the stream where the UTF-8 encoded document is written
+   * @throws IOException
+   *     if an I/O error occurs during serialization
+   */
+  public static void write(JsonNode document, SpecFormat format, OutputStream out) throws IOException {
+    getWriter(format).writeValue(out, document);
+  }
+
+  /**
+   * Writes security scheme types with their OpenAPI name (for example "http") instead of the enum constant name.
+   */
+  abstract static class SecuritySchemeTypeMixin {
+    @Override
+    @JsonValue
+    public abstract String toString();
+  }
+
+  /**
+   * Skips the flag the swagger models use to track whether an example was set, which is not part of the
+   * specification.
+   */
+  abstract static class ExampleSetFlagMixin {
+    @JsonIgnore
+    public abstract boolean getExampleSetFlag();
+  }
+}
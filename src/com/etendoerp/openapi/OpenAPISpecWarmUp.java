@@ -0,0 +1,147 @@
+package com.etendoerp.openapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.client.kernel.ApplicationInitializer;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.dal.service.OBDal;
+
+import com.etendoerp.openapi.data.OpenApiFlow;
+import com.etendoerp.openapi.model.OpenAPIEndpointRegistry;
+
+/**
+ * Generates the OpenAPI specifications in the background when the application starts, so the first clients do not
+ * pay for building them.
+ * <p>
+ * The warm-up is disabled by default and is enabled with the {@value OpenAPIProperties#WARMUP_ENABLED} property. It
+ * generates the full specification and the specification of every active flow, of the tags declared by the
+ * registered endpoints ("Window Settings" and "Jobs and Actions" among them) and of the
+ * {@value OpenAPIDefaultRequest#DEFAULT_TAG} tag. At most {@value OpenAPIProperties#WARMUP_PARALLELISM}
+ * specifications are generated at the same time, one by default, so the warm-up does not compete with the rest of
+ * the startup. The fragments of each specification are built in the warm-up thread that generates it, not in the
+ * generation pool, so the parallelism also bounds the threads used to build them.
+ * <p>
+ * The warm-up runs as System, so it only generates the specifications that are not scoped to a client, and the
+ * fragments of the endpoints that are not client scoped. The specifications of each client and their client scoped
+ * fragments are generated by the first request of the client.
+ * <p>
+ * The JSON specifications are generated with placeholders in their servers block, the same ones every request
+ * renders for its own host, so the warm-up does not depend on any host.
+ */
+@ApplicationScoped
+public class OpenAPISpecWarmUp implements ApplicationInitializer {
+
+  private static final Logger log = LogManager.getLogger(OpenAPISpecWarmUp.class);
+  private static final String SYSTEM = "0";
+  private static final long MAX_WAIT_MINUTES = 30;
+
+  @Override
+  public void initialize() {
+    if (!OpenAPIProperties.getBooleanProperty(OpenAPIProperties.WARMUP_ENABLED, false)) {
+      return;
+    }
+    Thread thread = new Thread(this::warmUp, "openapi-warm-up");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Generates the specifications of every known tag, waiting until all of them are done.
+   */
+  void warmUp() {
+    long start = System.currentTimeMillis();
+    List<String> tags;
+    try {
+      tags = OpenAPIGenerationExecutor.runInContext(null, () -> runAsSystem(this::getWarmUpTags));
+    } catch (Exception e) {
+      log.warn("Could not read the tags to warm up the OpenAPI specifications", e);
+      return;
+    }
+    int parallelism = (int) Math.max(1, Math.min(tags.size(),
+        OpenAPIProperties.getLongProperty(OpenAPIProperties.WARMUP_PARALLELISM, 1)));
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, new WarmUpThreadFactory());
+    for (String tag : tags) {
+      executor.execute(
+          () -> OpenAPIGenerationExecutor.runInContext(null, () -> runAsSystem(
+              () -> OpenAPIGenerationExecutor.runInline(() -> warmUp(tag)))));
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(MAX_WAIT_MINUTES, TimeUnit.MINUTES)) {
+        log.warn("OpenAPI warm-up did not finish in {} minutes", MAX_WAIT_MINUTES);
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    log.info("Warmed up {} OpenAPI specifications in {} ms", tags.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Returns the tags to warm up: null for the full specification, followed by the known tags sorted by name.
+   *
+   * @return the tags to warm up
+   */
+  List<String> getWarmUpTags() {
+    Set<String> names = new TreeSet<>();
+    for (OpenApiFlow flow : OBDal.getInstance().createCriteria(OpenApiFlow.class).list()) {
+      if (flow.getName() != null) {
+        names.add(flow.getName());
+      }
+    }
+    names.addAll(OpenAPIEndpointRegistry.getInstance().getKnownTags());
+    names.add(OpenAPIDefaultRequest.DEFAULT_TAG);
+    List<String> tags = new ArrayList<>(names.size() + 1);
+    tags.add(null);
+    tags.addAll(names);
+    return Collections.unmodifiableList(tags);
+  }
+
+  private Void warmUp(String tag) {
+    try {
+      new OpenAPIController().cacheOpenAPITemplate(RequestedTags.escape(tag));
+    } catch (Exception e) {
+      log.warn("Could not warm up the OpenAPI specification of tag {}", tag, e);
+    }
+    return null;
+  }
+
+  private static <T> T runAsSystem(Supplier<T> task) {
+    OBContext.setOBContext(SYSTEM, SYSTEM, SYSTEM, SYSTEM);
+    OBContext.setAdminMode(true);
+    try {
+      return task.get();
+    } finally {
+      OBContext.restorePreviousMode();
+    }
+  }
+
+  /**
+   * Creates the daemon threads of the warm-up.
+   */
+  private static class WarmUpThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "openapi-warm-up-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.etendoerp.openapi;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Parses the tag parameter of the OpenAPI requests, which can list several comma separated tags.
+ * <p>
+ * A list of tags is normalized by trimming each tag, removing the empty and repeated ones and sorting them, so the
+ * same tags requested in any order identify the same specification.
+ * <p>
+ * The name of a flow, and so a tag, can contain commas. A tag parameter that matches a known tag as a whole is taken
+ * as that tag, see {@link #normalize(String, Predicate)}, and is only split otherwise. The normalized list escapes
+ * the commas and backslashes inside each tag with a backslash, so it can always be split back into the same tags.
+ */
+public final class RequestedTags {
+
+  /**
+   * Separator of the tags in the tag parameter.
+   */
+  public static final String SEPARATOR = ",";
+
+  private static final char SEPARATOR_CHAR = ',';
+  private static final char ESCAPE_CHAR = '\\';
+
+  private RequestedTags() {
+  }
+
+  /**
+   * Normalizes a requested tag list.
+   *
+   * @param tag
+   *     the value of the tag parameter, can be null
+   * @return the sorted and comma separated tags, or null if no tag is requested
+   */
+  public static String normalize(String tag) {
+    return join(split(tag));
+  }
+
+  /**
+   * Normalizes the value of the tag parameter of a request, which is taken as a single tag when it is a known tag as
+   * a whole, even if it contains commas.
+   *
+   * @param tag
+   *     the value of the tag parameter, can be null
+   * @param isKnownTag
+   *     checks if a name is a known tag, only called when the parameter contains a comma or a backslash
+   * @return the sorted and comma separated tags, or null if no tag is requested
+   */
+  public static String normalize(String tag, Predicate<String> isKnownTag) {
+    if (StringUtils.containsAny(tag, SEPARATOR_CHAR, ESCAPE_CHAR) && isKnownTag.test(tag.trim())) {
+      return escape(tag.trim());
+    }
+    return normalize(tag);
+  }
+
+  /**
+   * Splits a requested tag list into its tags, unless the whole list is a known tag.
+   *
+   * @param tag
+   *     the requested tags, can be null
+   * @param isKnownTag
+   *     checks if a name is a known tag, only called when the list contains a comma or a backslash
+   * @return the sorted tags, empty if no tag is requested
+   */
+  public static Set<String> split(String tag, Predicate<String> isKnownTag) {
+    if (StringUtils.containsAny(tag, SEPARATOR_CHAR, ESCAPE_CHAR) && isKnownTag.test(tag.trim())) {
+      return Collections.singleton(tag.trim());
+    }
+    return split(tag);
+  }
+
+  /**
+   * Splits a requested tag list into its tags. The commas escaped with a backslash are kept in the tags.
+   *
+   * @param tag
+   *     the value of the tag parameter, can be null
+   * @return the sorted tags, empty if no tag is requested
+   */
+  public static Set<String> split(String tag) {
+    if (StringUtils.isBlank(tag)) {
+      return Collections.emptySet();
+    }
+    Set<String> tags = new TreeSet<>();
+    StringBuilder item = new StringBuilder();
+    for (int i = 0; i < tag.length(); i++) {
+      char c = tag.charAt(i);
+      if (c == ESCAPE_CHAR && i + 1 < tag.length()) {
+        item.append(tag.charAt(++i));
+      } else if (c == SEPARATOR_CHAR) {
+        addTag(tags, item);
+      } else {
+        item.append(c);
+      }
+    }
+    addTag(tags, item);
+    return Collections.unmodifiableSet(tags);
+  }
+
+  private static void addTag(Set<String> tags, StringBuilder item) {
+    if (StringUtils.isNotBlank(item)) {
+      tags.add(item.toString().trim());
+    }
+    item.setLength(0);
+  }
+
+  /**
+   * Joins the given tags into a comma separated list, escaping the commas and backslashes inside each tag.
+   *
+   * @param tags
+   *     the tags, in the order they are joined
+   * @return the tag list, or null if there are no tags
+   */
+  public static String join(Collection<String> tags) {
+    if (tags == null || tags.isEmpty()) {
+      return null;
+    }
+    StringBuilder joined = new StringBuilder();
+    for (String tag : tags) {
+      if (joined.length() > 0) {
+        joined.append(SEPARATOR_CHAR);
+      }
+      joined.append(escape(tag));
+    }
+    return joined.toString();
+  }
+
+  /**
+   * Escapes a single tag, so it is not split when given where a tag list is expected.
+   *
+   * @param tag
+   *     the tag, can be null
+   * @return the escaped tag, or null if the tag is null
+   */
+  public static String escape(String tag) {
+    if (tag == null || (tag.indexOf(SEPARATOR_CHAR) < 0 && tag.indexOf(ESCAPE_CHAR) < 0)) {
+      return tag;
+    }
+    StringBuilder escaped = new StringBuilder(tag.length() + 2);
+    for (int i = 0; i < tag.length(); i++) {
+      char c = tag.charAt(i);
+      if (c == SEPARATOR_CHAR || c == ESCAPE_CHAR) {
+        escaped.append(ESCAPE_CHAR);
+      }
+      escaped.append(c);
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,77 @@
+package com.etendoerp.openapi;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.oas.integration.GenericOpenApiContext;
+import io.swagger.v3.oas.integration.OpenApiConfigurationException;
+import io.swagger.v3.oas.integration.SwaggerConfiguration;
+import io.swagger.v3.oas.integration.api.OpenApiContext;
+import io.swagger.v3.oas.models.OpenAPI;
+
+/**
+ * Holds the OpenAPI definition obtained by the swagger-core reader from the annotated resources of the module.
+ * <p>
+ * The classpath scan is done once, on the first request, and its result is kept serialized as an immutable base
+ * document. Each specification starts from its own deep copy of it, so the generation can modify the document freely.
+ * When the scan finds nothing, an empty document is returned without copying anything.
+ */
+final class ScannedOpenAPIDefinition {
+
+  private static final String RESOURCE_PACKAGE = "com.etendoerp.openapi";
+  private static final Logger log = LogManager.getLogger(ScannedOpenAPIDefinition.class);
+
+  private static byte[] definition;
+  private static boolean scanned;
+
+  private ScannedOpenAPIDefinition() {
+  }
+
+  /**
+   * Returns a new document with the content found by the reader scan.
+   *
+   * @return a deep copy of the scanned definition
+   * @throws OpenApiConfigurationException
+   *     if the reader cannot be initialized or its result cannot be copied
+   */
+  static OpenAPI newDocument() throws OpenApiConfigurationException {
+    byte[] scannedDefinition = getDefinition();
+    if (scannedDefinition == null) {
+      return new OpenAPI();
+    }
+    try {
+      return Json.mapper().readValue(scannedDefinition, OpenAPI.class);
+    } catch (IOException e) {
+      throw new OpenApiConfigurationException("Error copying the scanned OpenAPI definition", e);
+    }
+  }
+
+  private static synchronized byte[] getDefinition() throws OpenApiConfigurationException {
+    if (!scanned) {
+      definition = scan();
+      scanned = true;
+    }
+    return definition;
+  }
+
+  private static byte[] scan() throws OpenApiConfigurationException {
+    long start = System.currentTimeMillis();
+    SwaggerConfiguration oasConfig = new SwaggerConfiguration().openAPI(new OpenAPI())
+        .resourcePackages(Collections.singleton(RESOURCE_PACKAGE));
+    OpenApiContext ctx = new GenericOpenApiContext<>().openApiConfiguration(oasConfig).init();
+    OpenAPI scannedOpenAPI = ctx.read();
+    try {
+      byte[] scannedBytes = Json.mapper().writeValueAsBytes(scannedOpenAPI);
+      byte[] emptyBytes = Json.mapper().writeValueAsBytes(new OpenAPI());
+      log.debug("OpenAPI reader scan of {} done in {} ms", RESOURCE_PACKAGE, System.currentTimeMillis() - start);
+      return Arrays.equals(scannedBytes, emptyBytes) ? null : scannedBytes;
+    } catch (IOException e) {
+      throw new OpenApiConfigurationException("Error storing the scanned OpenAPI definition", e);
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package com.etendoerp.openapi.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.etendoerp.openapi.ContentHash;
+
+/**
+ * Generated OpenAPI specification stored in the {@link OpenAPISpecCache}.
+ * <p>
+ * The specification is kept as UTF-8 encoded bytes so its weight in the cache is the real memory it takes. A strong
+ * entity tag is computed from the content so clients can revalidate their copy without downloading it again.
+ * <p>
+ * The compressed representations are computed once, when the specification is generated, and served as they are to
+ * every client that accepts them.
+ * <p>
+ * A specification can also be backed by the files of a {@link SpecSnapshotStore} snapshot. Its content is then not
+ * kept in memory and is written to the client straight from the file with {@link #writeTo(SpecEncoding, OutputStream)}.
+ */
+public final class CachedSpec {
+
+  private static final String WEAK_PREFIX = "W/";
+  private static final long FILE_ENTRY_WEIGHT = 512;
+
+  private final byte[] content;
+  private final byte[] gzipContent;
+  private final Path contentFile;
+  private final Path gzipFile;
+  private final long contentLength;
+  private final long gzipLength;
+  private final String etag;
+
+  /**
+   * Creates a cached specification from its serialized JSON.
+   *
+   * @param json
+   *     the serialized specification
+   */
+  public CachedSpec(String json) {
+    this(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Creates a cached specification from its UTF-8 encoded JSON.
+   *
+   * @param content
+   *     the serialized specification bytes, not copied
+   */
+  public CachedSpec(byte[] content) {
+    this.content = content;
+    this.gzipContent = SpecEncoding.GZIP.encode(content);
+    this.contentFile = null;
+    this.gzipFile = null;
+    this.contentLength = content.length;
+    this.gzipLength = gzipContent.length;
+    this.etag = "\"" + ContentHash.of(content) + "\"";
+  }
+
+  /**
+   * Creates a cached specification backed by snapshot files.
+   *
+   * @param contentFile
+   *     the file with the UTF-8 encoded specification
+   * @param gzipFile
+   *     the file with the gzip compressed specification
+   * @param etag
+   *     the entity tag of the content, including the surrounding quotes
+   * @throws IOException
+   *     if the size of the files cannot be read
+   */
+  CachedSpec(Path contentFile, Path gzipFile, String etag) throws IOException {
+    this.content = null;
+    this.gzipContent = null;
+    this.contentFile = contentFile;
+    this.gzipFile = gzipFile;
+    this.contentLength = Files.size(contentFile);
+    this.gzipLength = Files.size(gzipFile);
+    this.etag = etag;
+  }
+
+  /**
+   * Returns the serialized specification bytes. The returned array can be shared and must not be modified.
+   * <p>
+   * The content of a file backed specification is read from its file on each call, prefer
+   * {@link #writeTo(SpecEncoding, OutputStream)} to send it.
+   *
+   * @return the UTF-8 encoded specification
+   */
+  public byte[] getContent() {
+    return getContent(SpecEncoding.IDENTITY);
+  }
+
+  /**
+   * Returns the specification bytes in the given coding. The returned array can be shared and must not be
+   * modified.
+   *
+   * @param encoding
+   *     the content coding
+   * @return the encoded specification
+   */
+  public byte[] getContent(SpecEncoding encoding) {
+    boolean gzip = encoding == SpecEncoding.GZIP;
+    if (!isFileBacked()) {
+      return gzip ? gzipContent : content;
+    }
+    try {
+      return Files.readAllBytes(gzip ? gzipFile : contentFile);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error reading the OpenAPI snapshot", e);
+    }
+  }
+
+  /**
+   * Returns the length of the specification in the given coding.
+   *
+   * @param encoding
+   *     the content coding
+   * @return the length in bytes
+   */
+  public long getContentLength(SpecEncoding encoding) {
+    return encoding == SpecEncoding.GZIP ? gzipLength : contentLength;
+  }
+
+  /**
+   * Writes the specification in the given coding to the output stream. File backed specifications are transferred
+   * from their file channel, without loading them into the heap.
+   *
+   * @param encoding
+   *     the content coding
+   * @param out
+   *     the stream to write to, it is not closed
+   * @throws IOException
+   *     if the specification cannot be written
+   */
+  public void writeTo(SpecEncoding encoding, OutputStream out) throws IOException {
+    if (!isFileBacked()) {
+      out.write(getContent(encoding));
+      return;
+    }
+    WritableByteChannel target = Channels.newChannel(out);
+    try (FileChannel channel = FileChannel.open(encoding == SpecEncoding.GZIP ? gzipFile : contentFile,
+        StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        position += channel.transferTo(position, size - position, target);
+      }
+    }
+  }
+
+  /**
+   * Checks if the specification content is kept in snapshot files instead of in memory.
+   *
+   * @return true if the specification is backed by files
+   */
+  public boolean isFileBacked() {
+    return contentFile != null;
+  }
+
+  /**
+   * Returns the directory of the snapshot files backing the specification.
+   *
+   * @return the snapshot directory, or null if the specification is kept in memory
+   */
+  Path getSnapshotDirectory() {
+    return contentFile == null ? null : contentFile.getParent();
+  }
+
+  /**
+   * Returns the strong entity tag of the specification, including the surrounding quotes.
+   *
+   * @return the entity tag
+   */
+  public String getETag() {
+    return etag;
+  }
+
+  /**
+   * Returns the strong entity tag of the specification in the given coding. Each coding gets its own tag, as their
+   * bytes differ.
+   *
+   * @param encoding
+   *     the content coding
+   * @return the entity tag, including the surrounding quotes
+   */
+  public String getETag(SpecEncoding encoding) {
+    if (encoding.getContentCoding() == null) {
+      return etag;
+    }
+    return etag.substring(0, etag.length() - 1) + "-" + encoding.getContentCoding() + "\"";
+  }
+
+  /**
+   * Checks if the entity tags of an If-None-Match header match this specification, in which case the client copy is
+   * still valid. Weak comparison is used, as required for If-None-Match.
+   *
+   * @param ifNoneMatch
+   *     the value of the If-None-Match header, can be null
+   * @return true if the header matches this specification, false otherwise
+   */
+  public boolean matches(String ifNoneMatch) {
+    return matches(ifNoneMatch, SpecEncoding.IDENTITY);
+  }
+
+  /**
+   * Checks if the entity tags of an If-None-Match header match the given representation of this specification.
+   *
+   * @param ifNoneMatch
+   *     the value of the If-None-Match header, can be null
+   * @param encoding
+   *     the coding of the representation that would be sent
+   * @return true if the header matches the representation, false otherwise
+   */
+  public boolean matches(String ifNoneMatch, SpecEncoding encoding) {
+    if (StringUtils.isBlank(ifNoneMatch)) {
+      return false;
+    }
+    String etag = getETag(encoding);
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (StringUtils.startsWith(tag, WEAK_PREFIX)) {
+        tag = tag.substring(WEAK_PREFIX.length());
+      }
+      if ("*".equals(tag) || etag.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the specification as a JSON string.
+   *
+   * @return the serialized specification
+   */
+  public String asString() {
+    return new String(getContent(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the weight of this entry in the cache, in bytes.
+   *
+   * @return the approximate memory used by this entry
+   */
+  public long getWeight() {
+    if (isFileBacked()) {
+      return FILE_ENTRY_WEIGHT;
+    }
+    return contentLength + gzipLength;
+  }
+}
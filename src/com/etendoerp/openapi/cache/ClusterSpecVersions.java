@@ -0,0 +1,228 @@
+package com.etendoerp.openapi.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.dal.service.OBDal;
+import org.openbravo.exception.NoConnectionAvailableException;
+import org.openbravo.service.db.DalConnectionProvider;
+
+import com.etendoerp.openapi.OpenAPIProperties;
+
+/**
+ * Propagates the invalidation of the OpenAPI specifications between the nodes of a cluster through the
+ * ETAPI_OPENAPI_VERSION table.
+ * <p>
+ * The table keeps a version number per tag. The persistence observers increase the version of the changed tags in
+ * the same transaction as the change, see {@link com.etendoerp.openapi.events.OpenAPISpecCacheInvalidator}. Each
+ * node reads the versions before serving a specification, at most once every
+ * {@value OpenAPIProperties#CLUSTER_POLL_INTERVAL} milliseconds, and invalidates the tags whose version changed since
+ * its previous read. A change done in another node is then served at most one poll interval later. A node also sees
+ * its own changes, which only causes one extra invalidation.
+ * <p>
+ * The table is not registered as an entity, as it is only accessed with the statements of this class. The updates
+ * run on the connection of the current transaction inside a savepoint, so a failure, such as the table not being
+ * created yet, is rolled back on its own without aborting the transaction of the caller. The reads run in a
+ * transaction of their own, which is rolled back once the versions are read, so they do not take part in the
+ * transaction of the request that triggers them. A failed read is retried on the next poll.
+ */
+public class ClusterSpecVersions {
+
+  static final long DEFAULT_POLL_INTERVAL = 5000;
+
+  static final String UPDATE_SQL = "UPDATE ETAPI_OPENAPI_VERSION SET VERSION_NO = VERSION_NO + 1,"
+      + " UPDATED = CURRENT_TIMESTAMP WHERE TAG = ?";
+  static final String INSERT_SQL = "INSERT INTO ETAPI_OPENAPI_VERSION (ETAPI_OPENAPI_VERSION_ID, AD_CLIENT_ID,"
+      + " AD_ORG_ID, ISACTIVE, CREATED, CREATEDBY, UPDATED, UPDATEDBY, TAG, VERSION_NO)"
+      + " VALUES (get_uuid(), '0', '0', 'Y', CURRENT_TIMESTAMP, '0', CURRENT_TIMESTAMP, '0', ?, 1)";
+  static final String SELECT_SQL = "SELECT TAG, VERSION_NO FROM ETAPI_OPENAPI_VERSION";
+
+  private static final Logger log = LogManager.getLogger(ClusterSpecVersions.class);
+
+  private static ClusterSpecVersions instance;
+
+  private final long pollInterval;
+  private final Map<String, Long> seenVersions = new HashMap<>();
+  private final AtomicBoolean polling = new AtomicBoolean();
+  private boolean initialized;
+  private volatile long lastPoll;
+  private boolean failing;
+
+  /**
+   * Creates a poller reading the versions at most once every given interval.
+   *
+   * @param pollInterval
+   *     the minimum time between reads, in milliseconds, 0 or lower to disable them
+   */
+  ClusterSpecVersions(long pollInterval) {
+    this.pollInterval = pollInterval;
+  }
+
+  /**
+   * Returns the instance shared by all the OpenAPI controllers.
+   *
+   * @return the cluster versions instance
+   */
+  public static synchronized ClusterSpecVersions getInstance() {
+    if (instance == null) {
+      instance = new ClusterSpecVersions(
+          OpenAPIProperties.getLongProperty(OpenAPIProperties.CLUSTER_POLL_INTERVAL, DEFAULT_POLL_INTERVAL));
+    }
+    return instance;
+  }
+
+  /**
+   * Increases the version of the given tags in the current transaction, so the other nodes invalidate them once it
+   * is committed. The row of a tag inserted at the same time by another transaction is updated instead.
+   *
+   * @param tags
+   *     the tags whose flows changed
+   */
+  public void bump(Collection<String> tags) {
+    if (tags.isEmpty()) {
+      return;
+    }
+    Connection connection = OBDal.getInstance().getConnection(false);
+    try {
+      inSavepoint(connection, c -> {
+        try (PreparedStatement update = c.prepareStatement(UPDATE_SQL);
+            PreparedStatement insert = c.prepareStatement(INSERT_SQL)) {
+          for (String tag : tags) {
+            bump(c, update, insert, tag);
+          }
+        }
+        return null;
+      });
+    } catch (SQLException e) {
+      log.warn("Error updating the OpenAPI versions of tags {}", tags, e);
+    }
+  }
+
+  private static void bump(Connection connection, PreparedStatement update, PreparedStatement insert, String tag)
+      throws SQLException {
+    update.setString(1, tag);
+    if (update.executeUpdate() > 0) {
+      return;
+    }
+    try {
+      inSavepoint(connection, c -> {
+        insert.setString(1, tag);
+        return insert.executeUpdate();
+      });
+    } catch (SQLException e) {
+      log.debug("OpenAPI version of tag {} inserted by another transaction, updating it", tag, e);
+      update.executeUpdate();
+    }
+  }
+
+  /**
+   * Reads the versions if the poll interval has elapsed since the previous read and invalidates the tags changed in
+   * other nodes. When another thread is already reading them, it returns without waiting.
+   */
+  public void pollIfDue() {
+    if (pollInterval <= 0) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (now - lastPoll < pollInterval || !polling.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      lastPoll = now;
+      poll();
+    } finally {
+      polling.set(false);
+    }
+  }
+
+  /**
+   * Reads the versions and invalidates the tags changed since the previous read. The first read only records the
+   * current versions, as nothing is cached yet. A failed read is logged once and retried by the next poll.
+   */
+  synchronized void poll() {
+    Map<String, Long> versions;
+    try {
+      versions = readVersionsInOwnTransaction();
+    } catch (SQLException | NoConnectionAvailableException e) {
+      if (!failing) {
+        log.warn("Error reading the OpenAPI versions, retrying on the next poll", e);
+      }
+      failing = true;
+      return;
+    }
+    failing = false;
+    Set<String> changed = new HashSet<>();
+    if (initialized) {
+      versions.forEach((tag, version) -> {
+        if (!version.equals(seenVersions.get(tag))) {
+          changed.add(tag);
+        }
+      });
+    }
+    seenVersions.clear();
+    seenVersions.putAll(versions);
+    initialized = true;
+    if (!changed.isEmpty()) {
+      log.debug("OpenAPI tags {} changed in another node", changed);
+      SpecInvalidation.invalidate(changed);
+    }
+  }
+
+  private static Map<String, Long> readVersionsInOwnTransaction()
+      throws SQLException, NoConnectionAvailableException {
+    DalConnectionProvider provider = new DalConnectionProvider(false);
+    Connection connection = provider.getTransactionConnection();
+    try {
+      return readVersions(connection);
+    } finally {
+      provider.releaseRollbackConnection(connection);
+    }
+  }
+
+  private static Map<String, Long> readVersions(Connection connection) throws SQLException {
+    Map<String, Long> versions = new HashMap<>();
+    try (PreparedStatement select = connection.prepareStatement(SELECT_SQL);
+        ResultSet rs = select.executeQuery()) {
+      while (rs.next()) {
+        versions.put(rs.getString(1), rs.getLong(2));
+      }
+    }
+    return versions;
+  }
+
+  /**
+   * Runs the given statements inside a savepoint of the connection, rolling back to it if they fail, so the
+   * transaction can go on.
+   */
+  private static <T> T inSavepoint(Connection connection, SqlFunction<T> statements) throws SQLException {
+    Savepoint savepoint = connection.setSavepoint();
+    T result;
+    try {
+      result = statements.apply(connection);
+    } catch (SQLException e) {
+      connection.rollback(savepoint);
+      throw e;
+    }
+    connection.releaseSavepoint(savepoint);
+    return result;
+  }
+
+  /**
+   * Statements run on a connection.
+   */
+  @FunctionalInterface
+  private interface SqlFunction<T> {
+    T apply(Connection connection) throws SQLException;
+  }
+}
@@ -0,0 +1,111 @@
+package com.etendoerp.openapi.cache;
+
+import java.util.Date;
+
+import org.hibernate.criterion.Projections;
+import org.openbravo.base.structure.BaseOBObject;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.dal.service.OBCriteria;
+import org.openbravo.dal.service.OBDal;
+import org.openbravo.model.ad.module.Module;
+
+import com.etendoerp.openapi.ContentHash;
+import com.etendoerp.openapi.data.OpenAPIRequest;
+import com.etendoerp.openapi.data.OpenApiFlow;
+import com.etendoerp.openapi.data.OpenApiFlowPoint;
+import com.etendoerp.openapi.model.OpenAPIEndpoint;
+import com.etendoerp.openapi.model.OpenAPIEndpointRegistry;
+
+/**
+ * Fingerprint of the data the OpenAPI specifications are generated from, used to version the
+ * {@link SpecSnapshotStore} snapshots.
+ * <p>
+ * It combines the number of rows and the last update of the flows, flow points, requests and modules, as installing
+ * or updating a module can change the endpoints, together with the registered endpoint classes. The value is kept
+ * until the flows change, see {@link com.etendoerp.openapi.events.OpenAPISpecCacheInvalidator}. A value computed
+ * while the flows change is returned to its caller but not kept.
+ */
+public class FlowDataVersion {
+
+  private static final FlowDataVersion instance = new FlowDataVersion();
+
+  private String version;
+  private long generation;
+
+  /**
+   * Returns the data version shared by all the OpenAPI controllers.
+   *
+   * @return the data version instance
+   */
+  public static FlowDataVersion getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns the current data version, computing it if it was reset.
+   *
+   * @return a file name safe fingerprint of the data
+   */
+  public String get() {
+    long startGeneration;
+    synchronized (this) {
+      if (version != null) {
+        return version;
+      }
+      startGeneration = generation;
+    }
+    String current = compute();
+    synchronized (this) {
+      if (startGeneration == generation) {
+        version = current;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Discards the current data version, so it is computed again the next time it is used. A version being computed
+   * at the same time is not kept.
+   */
+  public synchronized void reset() {
+    generation++;
+    version = null;
+  }
+
+  private String compute() {
+    StringBuilder fingerprint = new StringBuilder();
+    OBContext.setAdminMode(true);
+    try {
+      appendTable(fingerprint, OpenApiFlow.class, OpenApiFlow.PROPERTY_UPDATED);
+      appendTable(fingerprint, OpenApiFlowPoint.class, OpenApiFlowPoint.PROPERTY_UPDATED);
+      appendTable(fingerprint, OpenAPIRequest.class, OpenAPIRequest.PROPERTY_UPDATED);
+      appendTable(fingerprint, Module.class, Module.PROPERTY_UPDATED);
+    } finally {
+      OBContext.restorePreviousMode();
+    }
+    for (OpenAPIEndpoint endpoint : OpenAPIEndpointRegistry.getInstance().getEndpoints()) {
+      fingerprint.append(endpoint.getClass().getName()).append(';');
+    }
+    return ContentHash.of(fingerprint.toString());
+  }
+
+  private static void appendTable(StringBuilder fingerprint, Class<? extends BaseOBObject> entityClass,
+      String updatedProperty) {
+    OBCriteria<? extends BaseOBObject> criteria = OBDal.getInstance().createCriteria(entityClass);
+    criteria.setFilterOnActive(false);
+    criteria.setFilterOnReadableClients(false);
+    criteria.setFilterOnReadableOrganization(false);
+    criteria.setProjection(Projections.projectionList()
+        .add(Projections.rowCount())
+        .add(Projections.max(updatedProperty)));
+    Object[] row = (Object[]) criteria.uniqueResult();
+    fingerprint.append(entityClass.getSimpleName()).append(':');
+    if (row != null) {
+      fingerprint.append(row[0]).append(':');
+      if (row[1] instanceof Date) {
+        fingerprint.append(((Date) row[1]).getTime());
+      }
+    }
+    fingerprint.append(';');
+  }
+}
@@ -0,0 +1,89 @@
+package com.etendoerp.openapi.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Computes RFC 6902 JSON Patch documents between two JSON trees.
+ * <p>
+ * Objects are compared member by member and arrays element by element, elements added or removed at the end of an
+ * array being added or removed one by one. Any other change replaces the value. The result is not the shortest
+ * possible patch, but applying it to the source always produces the target.
+ */
+final class JsonPatch {
+
+  private JsonPatch() {
+  }
+
+  /**
+   * Returns the operations transforming the source tree into the target tree.
+   *
+   * @param source
+   *     the previous document
+   * @param target
+   *     the current document
+   * @return the JSON Patch document, an empty array when both trees are equal
+   */
+  static ArrayNode diff(JsonNode source, JsonNode target) {
+    ArrayNode operations = JsonNodeFactory.instance.arrayNode();
+    diff("", source, target, operations);
+    return operations;
+  }
+
+  private static void diff(String path, JsonNode source, JsonNode target, ArrayNode operations) {
+    if (source.equals(target)) {
+      return;
+    }
+    if (source.isObject() && target.isObject()) {
+      Iterator<String> sourceNames = source.fieldNames();
+      while (sourceNames.hasNext()) {
+        String name = sourceNames.next();
+        if (!target.has(name)) {
+          addOperation(operations, "remove", path + "/" + escape(name), null);
+        }
+      }
+      Iterator<Map.Entry<String, JsonNode>> targetFields = target.fields();
+      while (targetFields.hasNext()) {
+        Map.Entry<String, JsonNode> field = targetFields.next();
+        String fieldPath = path + "/" + escape(field.getKey());
+        JsonNode sourceValue = source.get(field.getKey());
+        if (sourceValue == null) {
+          addOperation(operations, "add", fieldPath, field.getValue());
+        } else {
+          diff(fieldPath, sourceValue, field.getValue(), operations);
+        }
+      }
+    } else if (source.isArray() && target.isArray()) {
+      int common = Math.min(source.size(), target.size());
+      for (int i = 0; i < common; i++) {
+        diff(path + "/" + i, source.get(i), target.get(i), operations);
+      }
+      for (int i = source.size() - 1; i >= common; i--) {
+        addOperation(operations, "remove", path + "/" + i, null);
+      }
+      for (int i = common; i < target.size(); i++) {
+        addOperation(operations, "add", path + "/-", target.get(i));
+      }
+    } else {
+      addOperation(operations, "replace", path, target);
+    }
+  }
+
+  private static void addOperation(ArrayNode operations, String op, String path, JsonNode value) {
+    ObjectNode operation = operations.addObject();
+    operation.put("op", op);
+    operation.put("path", path);
+    if (value != null) {
+      operation.set("value", value);
+    }
+  }
+
+  private static String escape(String name) {
+    return name.replace("~", "~0").replace("/", "~1");
+  }
+}
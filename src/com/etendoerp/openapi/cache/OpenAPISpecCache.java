@@ -0,0 +1,404 @@
+package com.etendoerp.openapi.cache;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.etendoerp.openapi.OpenAPIGenerationExecutor;
+import com.etendoerp.openapi.OpenAPIProperties;
+import com.etendoerp.openapi.metrics.OpenAPIMetrics;
+
+/**
+ * Bounded in-memory cache of generated OpenAPI specifications.
+ * <p>
+ * Entries are weighted by their serialized size and the least recently used ones are evicted when the configured
+ * maximum size ({@value OpenAPIProperties#CACHE_MAX_SIZE} property) is exceeded. Entries are invalidated by tag when
+ * the flows, flow points or requests that define them change, see
+ * {@link com.etendoerp.openapi.events.OpenAPISpecCacheInvalidator}.
+ * <p>
+ * Concurrent requests of a specification that is not cached are coalesced by
+ * {@link #get(SpecCacheKey, Callable)}: only the first one generates it and the others wait for its result.
+ * <p>
+ * When the {@value OpenAPIProperties#CACHE_STALE_WHILE_REVALIDATE} property is enabled, invalidated entries are kept
+ * as stale and served while they are regenerated in the background, so clients do not wait for the regeneration. A
+ * stale entry whose regeneration fails keeps being served, and is not regenerated again for {@value #RETRY_DELAY} ms.
+ * Generations taking longer than the {@value OpenAPIProperties#CACHE_TIME_BUDGET} property are logged.
+ */
+public class OpenAPISpecCache {
+
+  static final long DEFAULT_MAX_SIZE = 32L * 1024L * 1024L;
+  static final long RETRY_DELAY = 60_000L;
+
+  private static final Logger log = LogManager.getLogger(OpenAPISpecCache.class);
+
+  private static OpenAPISpecCache instance;
+
+  private final long maxSize;
+  private final boolean staleWhileRevalidate;
+  private final long timeBudget;
+  private final Executor backgroundExecutor;
+  private final LinkedHashMap<SpecCacheKey, CachedSpec> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<SpecCacheKey> staleKeys = new HashSet<>();
+  private final Map<SpecCacheKey, Long> retryAfter = new HashMap<>();
+  private long currentSize;
+  private long generation;
+  private final Map<SpecCacheKey, CompletableFuture<CachedSpec>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a cache holding at most the given amount of bytes.
+   *
+   * @param maxSize
+   *     the maximum weight of the cached specifications, in bytes
+   */
+  OpenAPISpecCache(long maxSize) {
+    this(maxSize, false, 0, Runnable::run);
+  }
+
+  /**
+   * Creates a cache holding at most the given amount of bytes.
+   *
+   * @param maxSize
+   *     the maximum weight of the cached specifications, in bytes
+   * @param staleWhileRevalidate
+   *     whether invalidated specifications are served while they are regenerated in the background
+   * @param timeBudget
+   *     the time, in milliseconds, a caller waits for the regeneration of a stale specification, 0 to serve it
+   *     right away
+   * @param backgroundExecutor
+   *     runs the regeneration of stale specifications
+   */
+  OpenAPISpecCache(long maxSize, boolean staleWhileRevalidate, long timeBudget, Executor backgroundExecutor) {
+    this.maxSize = maxSize;
+    this.staleWhileRevalidate = staleWhileRevalidate;
+    this.timeBudget = timeBudget;
+    this.backgroundExecutor = backgroundExecutor;
+  }
+
+  /**
+   * Returns the cache shared by all the OpenAPI controllers.
+   *
+   * @return the cache instance
+   */
+  public static synchronized OpenAPISpecCache getInstance() {
+    if (instance == null) {
+      instance = new OpenAPISpecCache(
+          OpenAPIProperties.getLongProperty(OpenAPIProperties.CACHE_MAX_SIZE, DEFAULT_MAX_SIZE),
+          OpenAPIProperties.getBooleanProperty(OpenAPIProperties.CACHE_STALE_WHILE_REVALIDATE, false),
+          OpenAPIProperties.getLongProperty(OpenAPIProperties.CACHE_TIME_BUDGET, 0),
+          OpenAPIGenerationExecutor::execute);
+    }
+    return instance;
+  }
+
+  /**
+   * Checks if specifications can be cached. Setting the maximum size to 0 disables the cache, and specifications
+   * are then streamed to the client as they are generated.
+   *
+   * @return true if the cache is enabled, false otherwise
+   */
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Returns the cached specification for the given key.
+   *
+   * @param key
+   *     the specification key
+   * @return the cached specification, or null if it is not cached or it is stale
+   */
+  public synchronized CachedSpec get(SpecCacheKey key) {
+    return staleKeys.contains(key) ? null : entries.get(key);
+  }
+
+  /**
+   * Returns the cached specification for the given key, generating it if it is not cached.
+   * <p>
+   * When several threads request the same specification at the same time, only the first one runs the generator
+   * and the others wait for it and receive the same result, or the same failure. Invalidating the key while it is
+   * generated lets the next requests start a new generation instead of waiting for the outdated one.
+   * <p>
+   * In stale-while-revalidate mode, a specification invalidated since it was cached is regenerated in the background.
+   * The caller waits for the new one up to the configured time budget and receives the previous one if it is not
+   * ready by then, or if the generation fails. After a failed regeneration, the previous specification is served
+   * without regenerating it until the retry delay elapses or the key is invalidated again.
+   *
+   * @param key
+   *     the specification key
+   * @param generator
+   *     generates the specification when it is not cached
+   * @return the cached or generated specification
+   * @throws ExecutionException
+   *     if the generation fails, with the exception thrown by the generator as cause
+   */
+  public CachedSpec get(SpecCacheKey key, Callable<CachedSpec> generator) throws ExecutionException {
+    CachedSpec stale;
+    synchronized (this) {
+      CachedSpec spec = entries.get(key);
+      if (spec != null && !staleKeys.contains(key)) {
+        OpenAPIMetrics.getInstance().recordCacheHit();
+        return spec;
+      }
+      if (spec != null && isRetryPending(key)) {
+        OpenAPIMetrics.getInstance().recordStaleHit();
+        return spec;
+      }
+      stale = spec;
+    }
+    if (stale == null) {
+      OpenAPIMetrics.getInstance().recordCacheMiss();
+    }
+    CompletableFuture<CachedSpec> future = new CompletableFuture<>();
+    CompletableFuture<CachedSpec> running = inFlight.putIfAbsent(key, future);
+    if (running == null) {
+      running = future;
+      if (stale != null) {
+        backgroundExecutor.execute(() -> generate(key, generator, future, true));
+      } else {
+        generate(key, generator, future, false);
+      }
+    } else {
+      log.debug("Waiting for the generation of {} in progress", key);
+    }
+    if (stale != null) {
+      return awaitWithinBudget(key, running, stale);
+    }
+    return await(running);
+  }
+
+  private synchronized boolean isRetryPending(SpecCacheKey key) {
+    Long retryTime = retryAfter.get(key);
+    if (retryTime == null) {
+      return false;
+    }
+    if (retryTime > System.currentTimeMillis()) {
+      return true;
+    }
+    retryAfter.remove(key);
+    return false;
+  }
+
+  private synchronized void postponeRetry(SpecCacheKey key) {
+    if (staleKeys.contains(key)) {
+      log.warn("Regeneration of the OpenAPI specification {} failed, retrying in {} ms", key, RETRY_DELAY);
+      retryAfter.put(key, System.currentTimeMillis() + RETRY_DELAY);
+    }
+  }
+
+  private void generate(SpecCacheKey key, Callable<CachedSpec> generator, CompletableFuture<CachedSpec> future,
+      boolean background) {
+    long start = System.currentTimeMillis();
+    try {
+      CachedSpec spec = get(key);
+      if (spec == null) {
+        long startGeneration = getGeneration();
+        spec = generator.call();
+        put(key, spec, startGeneration);
+      }
+      future.complete(spec);
+    } catch (Exception e) {
+      if (background) {
+        postponeRetry(key);
+      }
+      future.completeExceptionally(e);
+    } catch (Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+      long elapsed = System.currentTimeMillis() - start;
+      if (timeBudget > 0 && elapsed > timeBudget) {
+        log.warn("Generation of the OpenAPI specification {} took {} ms, over the time budget of {} ms", key,
+            elapsed, timeBudget);
+      }
+    }
+  }
+
+  private static CachedSpec await(CompletableFuture<CachedSpec> future) throws ExecutionException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new ExecutionException(e.getCause());
+    }
+  }
+
+  private CachedSpec awaitWithinBudget(SpecCacheKey key, CompletableFuture<CachedSpec> future, CachedSpec stale) {
+    try {
+      CachedSpec spec = timeBudget > 0 ? future.get(timeBudget, TimeUnit.MILLISECONDS) : future.getNow(null);
+      if (spec != null) {
+        OpenAPIMetrics.getInstance().recordCacheMiss();
+        return spec;
+      }
+    } catch (TimeoutException e) {
+      log.debug("Generation of {} exceeded the time budget, serving the previous specification", key);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | CompletionException e) {
+      log.warn("Error regenerating the OpenAPI specification {}, serving the previous one", key, e.getCause());
+    }
+    OpenAPIMetrics.getInstance().recordStaleHit();
+    return stale;
+  }
+
+  /**
+   * Returns the current invalidation generation. It must be read before starting to generate a specification and
+   * passed to {@link #put(SpecCacheKey, CachedSpec, long)}, so specifications built while an invalidation happened
+   * are not cached.
+   *
+   * @return the current generation
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Stores a generated specification, evicting the least recently used entries if needed.
+   *
+   * @param key
+   *     the specification key
+   * @param spec
+   *     the generated specification
+   * @param startGeneration
+   *     the generation read before the specification was generated
+   * @return true if the specification was cached, false if it is outdated or too big to be cached
+   */
+  public synchronized boolean put(SpecCacheKey key, CachedSpec spec, long startGeneration) {
+    if (startGeneration != generation) {
+      log.debug("Discarding outdated specification for {}", key);
+      return false;
+    }
+    if (spec.getWeight() > maxSize) {
+      log.debug("Specification for {} exceeds the cache size ({} bytes)", key, spec.getWeight());
+      return false;
+    }
+    staleKeys.remove(key);
+    retryAfter.remove(key);
+    CachedSpec previous = entries.put(key, spec);
+    if (previous != null) {
+      currentSize -= previous.getWeight();
+    }
+    currentSize += spec.getWeight();
+    evict();
+    return true;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<SpecCacheKey, CachedSpec>> it = entries.entrySet().iterator();
+    while (currentSize > maxSize && it.hasNext()) {
+      Map.Entry<SpecCacheKey, CachedSpec> eldest = it.next();
+      log.debug("Evicting specification for {}", eldest.getKey());
+      currentSize -= eldest.getValue().getWeight();
+      staleKeys.remove(eldest.getKey());
+      retryAfter.remove(eldest.getKey());
+      it.remove();
+    }
+  }
+
+  /**
+   * Removes the specifications affected by a change in the given tags, see {@link SpecCacheKey#isAffectedBy}. The
+   * full specification is always removed because it contains the endpoints of every tag. In stale-while-revalidate
+   * mode they are kept as stale instead.
+   *
+   * @param tags
+   *     the names of the changed tags
+   */
+  public void invalidate(Collection<String> tags) {
+    invalidate(tags, null);
+  }
+
+  /**
+   * Removes the specifications affected by a change in the given tags of the given clients. The specifications scoped
+   * to other clients are kept, unless the changed flows are system flows.
+   *
+   * @param tags
+   *     the names of the changed tags
+   * @param clientIds
+   *     the clients of the changed flows, or null if they are not known
+   */
+  public synchronized void invalidate(Collection<String> tags, Collection<String> clientIds) {
+    generation++;
+    inFlight.keySet().removeIf(key -> key.isAffectedBy(tags, clientIds));
+    Iterator<Map.Entry<SpecCacheKey, CachedSpec>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<SpecCacheKey, CachedSpec> entry = it.next();
+      SpecCacheKey key = entry.getKey();
+      if (!key.isAffectedBy(tags, clientIds)) {
+        continue;
+      }
+      retryAfter.remove(key);
+      if (staleWhileRevalidate) {
+        staleKeys.add(key);
+      } else {
+        currentSize -= entry.getValue().getWeight();
+        it.remove();
+      }
+    }
+    log.debug("Invalidated OpenAPI specifications for tags {} of clients {}", tags, clientIds);
+  }
+
+  /**
+   * Removes every cached specification.
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    inFlight.clear();
+    entries.clear();
+    staleKeys.clear();
+    retryAfter.clear();
+    currentSize = 0;
+  }
+
+  /**
+   * Returns the snapshot directories of the cached specifications backed by files, stale ones included, which must
+   * not be removed while they are cached.
+   *
+   * @return the referenced snapshot directories
+   */
+  public synchronized Set<Path> getSnapshotDirectories() {
+    Set<Path> directories = new HashSet<>();
+    for (CachedSpec spec : entries.values()) {
+      Path directory = spec.getSnapshotDirectory();
+      if (directory != null) {
+        directories.add(directory);
+      }
+    }
+    return directories;
+  }
+
+  /**
+   * Returns the weight of the cached specifications.
+   *
+   * @return the cached bytes
+   */
+  public synchronized long getCurrentSize() {
+    return currentSize;
+  }
+
+  /**
+   * Returns the number of cached specifications.
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+}
@@ -0,0 +1,212 @@
+package com.etendoerp.openapi.cache;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+import com.etendoerp.openapi.ClientScope;
+import com.etendoerp.openapi.RequestedTags;
+
+/**
+ * Identifies a generated OpenAPI specification inside the {@link OpenAPISpecCache}.
+ * <p>
+ * A specification depends on the requested tag (null for the full specification), the base URL published in the
+ * servers block, whether the login endpoint is included and the format it is serialized in. Several comma separated
+ * tags can be requested, they are normalized with {@link RequestedTags} so the same tags in any order share the same
+ * key, and a comma inside a tag is escaped with a backslash so a flow named with commas is kept apart from the list of
+ * its parts. Specifications scoped to a client, see {@link ClientScope}, are cached apart for each client, and each
+ * {@link SpecProfile} is cached apart too.
+ */
+public final class SpecCacheKey {
+
+  private final String tag;
+  private final Set<String> tags;
+  private final String baseUrl;
+  private final boolean excludeLogin;
+  private final SpecFormat format;
+  private final String clientId;
+  private final SpecProfile profile;
+
+  /**
+   * Creates a new cache key of a JSON specification.
+   *
+   * @param tag
+   *     the requested tags, comma separated with the commas inside a tag escaped, or null for the full specification
+   * @param baseUrl
+   *     the base URL of the specification, or null for a specification with placeholders in its servers block
+   * @param excludeLogin
+   *     whether the login endpoint is excluded from the specification
+   */
+  public SpecCacheKey(String tag, String baseUrl, boolean excludeLogin) {
+    this(tag, baseUrl, excludeLogin, SpecFormat.JSON);
+  }
+
+  /**
+   * Creates a new cache key.
+   *
+   * @param tag
+   *     the requested tags, comma separated with the commas inside a tag escaped, or null for the full specification
+   * @param baseUrl
+   *     the base URL of the specification, or null for a specification with placeholders in its servers block
+   * @param excludeLogin
+   *     whether the login endpoint is excluded from the specification
+   * @param format
+   *     the format the specification is serialized in
+   */
+  public SpecCacheKey(String tag, String baseUrl, boolean excludeLogin, SpecFormat format) {
+    this(tag, baseUrl, excludeLogin, format, null);
+  }
+
+  /**
+   * Creates a new cache key of a specification scoped to a client.
+   *
+   * @param tag
+   *     the requested tags, comma separated with the commas inside a tag escaped, or null for the full specification
+   * @param baseUrl
+   *     the base URL of the specification, or null for a specification with placeholders in its servers block
+   * @param excludeLogin
+   *     whether the login endpoint is excluded from the specification
+   * @param format
+   *     the format the specification is serialized in
+   * @param clientId
+   *     the client whose flows are documented, or null for every flow
+   */
+  public SpecCacheKey(String tag, String baseUrl, boolean excludeLogin, SpecFormat format, String clientId) {
+    this(tag, baseUrl, excludeLogin, format, clientId, SpecProfile.FULL);
+  }
+
+  /**
+   * Creates a new cache key of a specification scoped to a client and served in the given profile.
+   *
+   * @param tag
+   *     the requested tags, comma separated with the commas inside a tag escaped, or null for the full specification
+   * @param baseUrl
+   *     the base URL of the specification, or null for a specification with placeholders in its servers block
+   * @param excludeLogin
+   *     whether the login endpoint is excluded from the specification
+   * @param format
+   *     the format the specification is serialized in
+   * @param clientId
+   *     the client whose flows are documented, or null for every flow
+   * @param profile
+   *     the profile the specification is served in
+   */
+  public SpecCacheKey(String tag, String baseUrl, boolean excludeLogin, SpecFormat format, String clientId,
+      SpecProfile profile) {
+    this.tags = RequestedTags.split(tag);
+    this.tag = RequestedTags.join(tags);
+    this.baseUrl = baseUrl;
+    this.excludeLogin = excludeLogin;
+    this.format = format;
+    this.clientId = clientId;
+    this.profile = profile;
+  }
+
+  public String getTag() {
+    return tag;
+  }
+
+  /**
+   * Returns the requested tags.
+   *
+   * @return the sorted tags, empty for the full specification
+   */
+  public Set<String> getTags() {
+    return tags;
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  public boolean isExcludeLogin() {
+    return excludeLogin;
+  }
+
+  public SpecFormat getFormat() {
+    return format;
+  }
+
+  public String getClientId() {
+    return clientId;
+  }
+
+  public SpecProfile getProfile() {
+    return profile;
+  }
+
+  /**
+   * Checks if the specification identified by this key is the full specification, which contains the endpoints of
+   * every tag.
+   *
+   * @return true if no tag was requested, false otherwise
+   */
+  public boolean isFullSpec() {
+    return tag == null;
+  }
+
+  /**
+   * Checks if the specification identified by this key includes any of the given tags, so it must be invalidated
+   * when they change. The full specification includes every tag.
+   *
+   * @param changedTags
+   *     the names of the changed tags
+   * @return true if the specification is affected by the change, false otherwise
+   */
+  public boolean isAffectedBy(Collection<String> changedTags) {
+    return isAffectedBy(changedTags, null);
+  }
+
+  /**
+   * Checks if the specification identified by this key includes any of the given tags of the given clients, so it
+   * must be invalidated when they change. Each changed tag is compared as a whole with the requested tags, so a flow
+   * whose name contains commas only affects the specifications that requested it. The specifications of other clients
+   * are not affected, unless the changed flows are system flows.
+   *
+   * @param changedTags
+   *     the names of the changed tags
+   * @param changedClientIds
+   *     the clients of the changed flows, or null if they are not known
+   * @return true if the specification is affected by the change, false otherwise
+   */
+  public boolean isAffectedBy(Collection<String> changedTags, Collection<String> changedClientIds) {
+    if (!ClientScope.isAffectedBy(clientId, changedClientIds)) {
+      return false;
+    }
+    if (isFullSpec()) {
+      return true;
+    }
+    for (String changedTag : changedTags) {
+      if (tags.contains(changedTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SpecCacheKey)) {
+      return false;
+    }
+    SpecCacheKey other = (SpecCacheKey) o;
+    return excludeLogin == other.excludeLogin && format == other.format && Objects.equals(tag, other.tag)
+        && Objects.equals(baseUrl, other.baseUrl) && Objects.equals(clientId, other.clientId)
+        && profile == other.profile;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(tag, baseUrl, excludeLogin, format, clientId, profile);
+  }
+
+  @Override
+  public String toString() {
+    return "SpecCacheKey{tag=" + tag + ", baseUrl=" + baseUrl + ", excludeLogin=" + excludeLogin + ", format="
+        + format + (clientId == null ? "" : ", clientId=" + clientId)
+        + (profile == SpecProfile.FULL ? "" : ", profile=" + profile) + "}";
+  }
+}
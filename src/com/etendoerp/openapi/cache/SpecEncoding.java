@@ -0,0 +1,109 @@
+package com.etendoerp.openapi.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Content codings in which a cached specification can be served.
+ */
+public enum SpecEncoding {
+
+  /**
+   * The specification bytes as generated.
+   */
+  IDENTITY(null),
+
+  /**
+   * The specification compressed with gzip.
+   */
+  GZIP("gzip");
+
+  private final String contentCoding;
+
+  SpecEncoding(String contentCoding) {
+    this.contentCoding = contentCoding;
+  }
+
+  /**
+   * Returns the value of the Content-Encoding header for this coding.
+   *
+   * @return the content coding name, or null for the identity coding
+   */
+  public String getContentCoding() {
+    return contentCoding;
+  }
+
+  /**
+   * Encodes the given content with this coding.
+   *
+   * @param content
+   *     the raw content
+   * @return the encoded content
+   */
+  byte[] encode(byte[] content) {
+    if (this == IDENTITY) {
+      return content;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(content.length / 8, 512));
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(content);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Selects the coding to use for a request based on its Accept-Encoding header. The compressed coding is selected
+   * when the client accepts it with a non-zero quality value, either explicitly or through the "*" wildcard.
+   *
+   * @param acceptEncoding
+   *     the value of the Accept-Encoding header, can be null
+   * @return the coding to use in the response
+   */
+  public static SpecEncoding negotiate(String acceptEncoding) {
+    if (StringUtils.isBlank(acceptEncoding)) {
+      return IDENTITY;
+    }
+    Float gzipQuality = null;
+    Float wildcardQuality = null;
+    for (String item : acceptEncoding.split(",")) {
+      String[] parts = item.trim().split(";");
+      String coding = parts[0].trim();
+      float quality = getQuality(parts);
+      if (StringUtils.equalsIgnoreCase(coding, GZIP.contentCoding) || StringUtils.equalsIgnoreCase(coding,
+          "x-gzip")) {
+        gzipQuality = quality;
+      } else if ("*".equals(coding)) {
+        wildcardQuality = quality;
+      }
+    }
+    Float quality = gzipQuality != null ? gzipQuality : wildcardQuality;
+    return quality != null && quality > 0 ? GZIP : IDENTITY;
+  }
+
+  /**
+   * Returns the quality value of an item of an Accept or Accept-Encoding header.
+   *
+   * @param parts
+   *     the item split by ";", the first part being the media type or coding
+   * @return the "q" parameter, 1 if it is missing or 0 if it is not a number
+   */
+  static float getQuality(String[] parts) {
+    for (int i = 1; i < parts.length; i++) {
+      String param = parts[i].trim();
+      if (StringUtils.startsWithIgnoreCase(param, "q=")) {
+        try {
+          return Float.parseFloat(param.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+}
@@ -0,0 +1,82 @@
+package com.etendoerp.openapi.cache;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Formats in which a specification can be served. Each format is cached as its own specification, serialized from
+ * the same endpoint fragments.
+ */
+public enum SpecFormat {
+
+  /**
+   * The specification serialized as JSON.
+   */
+  JSON("application/json", ".json"),
+
+  /**
+   * The specification serialized as YAML.
+   */
+  YAML("application/yaml", ".yaml");
+
+  private static final String[] YAML_MEDIA_TYPES = { "application/yaml", "application/x-yaml", "text/yaml",
+      "text/x-yaml" };
+
+  private final String contentType;
+  private final String fileSuffix;
+
+  SpecFormat(String contentType, String fileSuffix) {
+    this.contentType = contentType;
+    this.fileSuffix = fileSuffix;
+  }
+
+  /**
+   * Returns the value of the Content-Type header for this format, without charset.
+   *
+   * @return the media type of the format
+   */
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * Returns the file name suffix of the specifications stored in this format.
+   *
+   * @return the suffix, including the leading dot
+   */
+  public String getFileSuffix() {
+    return fileSuffix;
+  }
+
+  /**
+   * Selects the format of a request. An explicit format parameter ("json" or "yaml") takes precedence. Otherwise
+   * YAML is selected when the Accept header lists a YAML media type with a higher quality value than JSON, so JSON
+   * is kept when both are accepted alike.
+   *
+   * @param format
+   *     the value of the format parameter, can be null
+   * @param accept
+   *     the value of the Accept header, can be null
+   * @return the format to use in the response
+   */
+  public static SpecFormat negotiate(String format, String accept) {
+    if (StringUtils.isNotBlank(format)) {
+      return StringUtils.equalsAnyIgnoreCase(format.trim(), "yaml", "yml") ? YAML : JSON;
+    }
+    if (StringUtils.isBlank(accept)) {
+      return JSON;
+    }
+    float jsonQuality = 0;
+    float yamlQuality = 0;
+    for (String item : accept.split(",")) {
+      String[] parts = item.trim().split(";");
+      String mediaType = parts[0].trim();
+      float quality = SpecEncoding.getQuality(parts);
+      if (StringUtils.equalsIgnoreCase(mediaType, JSON.contentType)) {
+        jsonQuality = Math.max(jsonQuality, quality);
+      } else if (StringUtils.equalsAnyIgnoreCase(mediaType, YAML_MEDIA_TYPES)) {
+        yamlQuality = Math.max(yamlQuality, quality);
+      }
+    }
+    return yamlQuality > jsonQuality ? YAML : JSON;
+  }
+}
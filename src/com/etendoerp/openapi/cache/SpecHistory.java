@@ -0,0 +1,220 @@
+package com.etendoerp.openapi.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.etendoerp.openapi.OpenAPIProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the recent versions of each JSON specification, so clients that already have one of them can receive an
+ * RFC 6902 JSON Patch to the current version instead of the whole document.
+ * <p>
+ * Each specification keeps a bounded ring of its last {@value OpenAPIProperties#HISTORY_SIZE} versions, stored gzip
+ * compressed. The least recently used specifications are discarded when the versions of all of them exceed the
+ * {@value OpenAPIProperties#HISTORY_MAX_SIZE} property. The last patch computed for each specification is kept, as
+ * polling clients usually ask for the same one.
+ */
+public class SpecHistory {
+
+  static final int DEFAULT_SIZE = 4;
+  static final long DEFAULT_MAX_SIZE = 8L * 1024L * 1024L;
+
+  private static final Logger log = LogManager.getLogger(SpecHistory.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final byte[] EMPTY_PATCH = "[]".getBytes(StandardCharsets.UTF_8);
+  private static final String WEAK_PREFIX = "W/";
+
+  private static SpecHistory instance;
+
+  private final int size;
+  private final long maxSize;
+  private final LinkedHashMap<SpecCacheKey, Ring> rings = new LinkedHashMap<>(16, 0.75f, true);
+  private long currentSize;
+
+  /**
+   * Creates a history keeping the given number of versions per specification.
+   *
+   * @param size
+   *     the number of versions kept per specification, 0 or lower to disable the history
+   * @param maxSize
+   *     the maximum weight of the versions of all the specifications, in bytes
+   */
+  SpecHistory(int size, long maxSize) {
+    this.size = size;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the history shared by all the OpenAPI controllers.
+   *
+   * @return the history instance
+   */
+  public static synchronized SpecHistory getInstance() {
+    if (instance == null) {
+      instance = new SpecHistory(
+          (int) OpenAPIProperties.getLongProperty(OpenAPIProperties.HISTORY_SIZE, DEFAULT_SIZE),
+          OpenAPIProperties.getLongProperty(OpenAPIProperties.HISTORY_MAX_SIZE, DEFAULT_MAX_SIZE));
+    }
+    return instance;
+  }
+
+  /**
+   * Records the given version of a specification, if it is not its latest recorded version. Only JSON
+   * specifications are recorded.
+   *
+   * @param key
+   *     the specification key
+   * @param spec
+   *     the version served to a client
+   */
+  public void record(SpecCacheKey key, CachedSpec spec) {
+    if (size <= 0 || key.getFormat() != SpecFormat.JSON) {
+      return;
+    }
+    synchronized (this) {
+      Ring ring = rings.get(key);
+      if (ring != null && !ring.versions.isEmpty() && spec.getETag().equals(ring.versions.peekLast().etag)) {
+        return;
+      }
+    }
+    Version version = new Version(spec.getETag(), spec.getContent(SpecEncoding.GZIP));
+    synchronized (this) {
+      Ring ring = rings.computeIfAbsent(key, k -> new Ring());
+      if (!ring.versions.isEmpty() && version.etag.equals(ring.versions.peekLast().etag)) {
+        return;
+      }
+      ring.versions.addLast(version);
+      currentSize += version.getWeight();
+      while (ring.versions.size() > size) {
+        currentSize -= ring.versions.removeFirst().getWeight();
+      }
+      evict();
+    }
+  }
+
+  /**
+   * Returns the JSON Patch transforming a previous version of a specification into the given current version.
+   *
+   * @param key
+   *     the specification key
+   * @param baseETag
+   *     the entity tag of the version the client has, with or without quotes
+   * @param current
+   *     the current version of the specification
+   * @return the UTF-8 encoded JSON Patch, or null if the base version is not known
+   * @throws IOException
+   *     if a version cannot be read
+   */
+  public byte[] diff(SpecCacheKey key, String baseETag, CachedSpec current) throws IOException {
+    String base = normalize(baseETag);
+    if (base.equals(current.getETag())) {
+      return EMPTY_PATCH;
+    }
+    Version baseVersion = null;
+    Ring ring;
+    synchronized (this) {
+      ring = rings.get(key);
+      if (ring == null) {
+        return null;
+      }
+      if (base.equals(ring.patchBase) && current.getETag().equals(ring.patchTarget)) {
+        return ring.patch;
+      }
+      for (Version version : ring.versions) {
+        if (version.etag.equals(base)) {
+          baseVersion = version;
+        }
+      }
+    }
+    if (baseVersion == null) {
+      return null;
+    }
+    JsonNode source;
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(baseVersion.gzipContent))) {
+      source = MAPPER.readTree(in);
+    }
+    JsonNode target = MAPPER.readTree(current.getContent());
+    byte[] patch = MAPPER.writeValueAsBytes(JsonPatch.diff(source, target));
+    log.debug("Computed OpenAPI patch of {} bytes from {} to {} for {}", patch.length, base, current.getETag(), key);
+    synchronized (this) {
+      ring.patchBase = base;
+      ring.patchTarget = current.getETag();
+      ring.patch = patch;
+    }
+    return patch;
+  }
+
+  /**
+   * Discards every recorded version.
+   */
+  public synchronized void clear() {
+    rings.clear();
+    currentSize = 0;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<SpecCacheKey, Ring>> iterator = rings.entrySet().iterator();
+    while (currentSize > maxSize && iterator.hasNext()) {
+      Ring ring = iterator.next().getValue();
+      for (Version version : ring.versions) {
+        currentSize -= version.getWeight();
+      }
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Returns the entity tag of a version as served in the ETag header of its identity coding.
+   */
+  private static String normalize(String etag) {
+    String value = etag.trim();
+    if (value.startsWith(WEAK_PREFIX)) {
+      value = value.substring(WEAK_PREFIX.length());
+    }
+    value = StringUtils.strip(value, "\"");
+    String gzipSuffix = "-" + SpecEncoding.GZIP.getContentCoding();
+    value = StringUtils.removeEnd(value, gzipSuffix);
+    return "\"" + value + "\"";
+  }
+
+  /**
+   * Recent versions of a specification, oldest first, with the last computed patch.
+   */
+  private static class Ring {
+    private final Deque<Version> versions = new ArrayDeque<>();
+    private String patchBase;
+    private String patchTarget;
+    private byte[] patch;
+  }
+
+  /**
+   * A recorded version of a specification.
+   */
+  private static class Version {
+    private final String etag;
+    private final byte[] gzipContent;
+
+    Version(String etag, byte[] gzipContent) {
+      this.etag = etag;
+      this.gzipContent = gzipContent;
+    }
+
+    long getWeight() {
+      return gzipContent.length;
+    }
+  }
+}
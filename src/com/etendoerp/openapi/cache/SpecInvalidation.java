@@ -0,0 +1,40 @@
+package com.etendoerp.openapi.cache;
+
+import java.util.Collection;
+
+import com.etendoerp.openapi.model.OpenAPIEndpointRegistry;
+
+/**
+ * Discards everything this node keeps about the specifications of some tags: the endpoint fragments, the data
+ * version of the snapshots and the cached specifications.
+ */
+public final class SpecInvalidation {
+
+  private SpecInvalidation() {
+  }
+
+  /**
+   * Invalidates the given tags and the full specification.
+   *
+   * @param tags
+   *     the tags whose flows changed
+   */
+  public static void invalidate(Collection<String> tags) {
+    invalidate(tags, null);
+  }
+
+  /**
+   * Invalidates the given tags and the full specification of the given clients, and of every client if any of them
+   * is the system client.
+   *
+   * @param tags
+   *     the tags whose flows changed
+   * @param clientIds
+   *     the clients of the changed flows, or null if they are not known
+   */
+  public static void invalidate(Collection<String> tags, Collection<String> clientIds) {
+    OpenAPIEndpointRegistry.getInstance().invalidate(tags, clientIds);
+    FlowDataVersion.getInstance().reset();
+    OpenAPISpecCache.getInstance().invalidate(tags, clientIds);
+  }
+}
@@ -0,0 +1,32 @@
+package com.etendoerp.openapi.cache;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Profiles in which a specification can be served. Each profile is cached as its own specification, serialized from
+ * the same endpoint fragments.
+ */
+public enum SpecProfile {
+
+  /**
+   * The specification with all its documentation.
+   */
+  FULL,
+
+  /**
+   * The specification for automated clients, without examples nor descriptions, see
+   * {@link com.etendoerp.openapi.model.SpecCompactor}.
+   */
+  COMPACT;
+
+  /**
+   * Selects the profile of a request from its profile parameter. Unknown values select the full profile.
+   *
+   * @param profile
+   *     the value of the profile parameter, can be null
+   * @return the profile to use in the response
+   */
+  public static SpecProfile parse(String profile) {
+    return StringUtils.equalsIgnoreCase(StringUtils.trim(profile), "compact") ? COMPACT : FULL;
+  }
+}
@@ -0,0 +1,254 @@
+package com.etendoerp.openapi.cache;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.etendoerp.openapi.ContentHash;
+import com.etendoerp.openapi.OpenAPIProperties;
+
+/**
+ * Keeps the generated OpenAPI specifications on disk, so they survive restarts while the data defining them does not
+ * change.
+ * <p>
+ * Snapshots are enabled with the {@value OpenAPIProperties#SNAPSHOT_ENABLED} property and stored in the
+ * {@value OpenAPIProperties#SNAPSHOT_DIR} directory, or in an openapi-snapshots directory inside attach.path, in a
+ * subdirectory of the node, named after the {@value OpenAPIProperties#SNAPSHOT_NODE} property or the host name, as
+ * the nodes of a cluster can share attach.path. Each specification is stored as a file in its format and its gzip
+ * compressed copy, under a directory named after the {@link FlowDataVersion} they were generated with:
+ *
+ * <pre>
+ * &lt;dir&gt;/&lt;node&gt;/v1/&lt;data version&gt;/&lt;key hash&gt;-&lt;content hash&gt;.(json|yaml)[.gz]
+ * </pre>
+ *
+ * The content hash is the entity tag of the specification, so a loaded snapshot keeps the tag it was served with.
+ * Directories of other data versions are removed when a snapshot of a new version is stored, except those still
+ * referenced by the specifications of the {@link OpenAPISpecCache}, stale ones included, which are removed by a
+ * later store once they are no longer cached.
+ */
+public class SpecSnapshotStore {
+
+  private static final Logger log = LogManager.getLogger(SpecSnapshotStore.class);
+
+  private static final String LAYOUT_VERSION = "v1";
+  private static final String DEFAULT_DIR_NAME = "openapi-snapshots";
+  private static final String GZIP_SUFFIX = ".gz";
+  private static final String DEFAULT_NODE_NAME = "default";
+
+  private static SpecSnapshotStore instance;
+
+  private final Path directory;
+  private final Supplier<Set<Path>> referencedDirectories;
+  private String cleanedVersion;
+
+  /**
+   * Creates a store keeping its snapshots in the given directory.
+   *
+   * @param directory
+   *     the snapshot directory, or null to disable the snapshots
+   */
+  SpecSnapshotStore(Path directory) {
+    this(directory, Collections::emptySet);
+  }
+
+  /**
+   * Creates a store keeping its snapshots in the given directory.
+   *
+   * @param directory
+   *     the snapshot directory, or null to disable the snapshots
+   * @param referencedDirectories
+   *     returns the data version directories that are still in use and must not be removed
+   */
+  SpecSnapshotStore(Path directory, Supplier<Set<Path>> referencedDirectories) {
+    this.directory = directory == null ? null : directory.resolve(LAYOUT_VERSION);
+    this.referencedDirectories = referencedDirectories;
+  }
+
+  /**
+   * Returns the store shared by all the OpenAPI controllers.
+   *
+   * @return the store instance
+   */
+  public static synchronized SpecSnapshotStore getInstance() {
+    if (instance == null) {
+      Path dir = getConfiguredDirectory();
+      instance = new SpecSnapshotStore(dir == null ? null : dir.resolve(getNodeName()),
+          () -> OpenAPISpecCache.getInstance().getSnapshotDirectories());
+    }
+    return instance;
+  }
+
+  private static Path getConfiguredDirectory() {
+    if (!OpenAPIProperties.getBooleanProperty(OpenAPIProperties.SNAPSHOT_ENABLED, false)) {
+      return null;
+    }
+    String dir = OpenAPIProperties.getProperty(OpenAPIProperties.SNAPSHOT_DIR);
+    if (dir != null) {
+      return Paths.get(dir);
+    }
+    String attachPath = OpenAPIProperties.getProperty("attach.path");
+    if (attachPath == null) {
+      log.warn("OpenAPI snapshots are enabled but neither {} nor attach.path are set",
+          OpenAPIProperties.SNAPSHOT_DIR);
+      return null;
+    }
+    return Paths.get(attachPath, DEFAULT_DIR_NAME);
+  }
+
+  private static String getNodeName() {
+    String node = OpenAPIProperties.getProperty(OpenAPIProperties.SNAPSHOT_NODE);
+    if (node == null) {
+      try {
+        node = InetAddress.getLocalHost().getHostName();
+      } catch (IOException e) {
+        log.warn("Could not read the host name, storing the OpenAPI snapshots in the {} node directory",
+            DEFAULT_NODE_NAME, e);
+        node = DEFAULT_NODE_NAME;
+      }
+    }
+    return node.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  /**
+   * Checks if the specifications are kept on disk.
+   *
+   * @return true if the snapshots are enabled
+   */
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * Loads the snapshot of the given specification generated with the given data version.
+   *
+   * @param key
+   *     the specification key
+   * @param dataVersion
+   *     the current data version
+   * @return the specification backed by the snapshot files, or null if there is no snapshot
+   */
+  public CachedSpec load(SpecCacheKey key, String dataVersion) {
+    if (!isEnabled()) {
+      return null;
+    }
+    Path versionDir = directory.resolve(dataVersion);
+    if (!Files.isDirectory(versionDir)) {
+      return null;
+    }
+    String keyHash = ContentHash.of(key.toString());
+    String suffix = key.getFormat().getFileSuffix();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(versionDir, keyHash + "-*" + suffix)) {
+      for (Path contentFile : files) {
+        String fileName = contentFile.getFileName().toString();
+        Path gzipFile = contentFile.resolveSibling(fileName + GZIP_SUFFIX);
+        if (Files.exists(gzipFile)) {
+          String contentHash = fileName.substring(keyHash.length() + 1, fileName.length() - suffix.length());
+          log.debug("Loaded OpenAPI snapshot {} for {}", contentFile, key);
+          return new CachedSpec(contentFile, gzipFile, "\"" + contentHash + "\"");
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Error reading the OpenAPI snapshots of {}", versionDir, e);
+    }
+    return null;
+  }
+
+  /**
+   * Stores a generated specification on disk.
+   *
+   * @param key
+   *     the specification key
+   * @param dataVersion
+   *     the data version the specification was generated with
+   * @param spec
+   *     the generated specification
+   * @return the specification backed by the stored files, or the given one if it cannot be stored
+   */
+  public CachedSpec store(SpecCacheKey key, String dataVersion, CachedSpec spec) {
+    if (!isEnabled() || spec.isFileBacked()) {
+      return spec;
+    }
+    Path versionDir = directory.resolve(dataVersion);
+    String contentHash = StringUtils.strip(spec.getETag(), "\"");
+    String baseName = ContentHash.of(key.toString()) + "-" + contentHash + key.getFormat().getFileSuffix();
+    try {
+      Files.createDirectories(versionDir);
+      Path gzipFile = write(versionDir, baseName + GZIP_SUFFIX, spec.getContent(SpecEncoding.GZIP));
+      Path contentFile = write(versionDir, baseName, spec.getContent());
+      removeOtherVersions(dataVersion);
+      return new CachedSpec(contentFile, gzipFile, spec.getETag());
+    } catch (IOException e) {
+      log.warn("Error storing the OpenAPI snapshot of {} in {}", key, versionDir, e);
+      return spec;
+    }
+  }
+
+  /**
+   * Writes a file atomically, so a snapshot is never read while it is being written.
+   */
+  private static Path write(Path dir, String fileName, byte[] content) throws IOException {
+    Path target = dir.resolve(fileName);
+    Path temp = Files.createTempFile(dir, fileName, ".tmp");
+    try {
+      Files.write(temp, content);
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return target;
+  }
+
+  /**
+   * Removes the directories of the data versions other than the given one that are not referenced by a cached
+   * specification. The removal is tried again by the next stores while a referenced directory is left.
+   */
+  private synchronized void removeOtherVersions(String dataVersion) {
+    if (dataVersion.equals(cleanedVersion)) {
+      return;
+    }
+    Set<Path> referenced = referencedDirectories.get();
+    boolean cleaned = true;
+    try (DirectoryStream<Path> versions = Files.newDirectoryStream(directory)) {
+      for (Path versionDir : versions) {
+        if (versionDir.getFileName().toString().equals(dataVersion)) {
+          continue;
+        }
+        if (referenced.contains(versionDir)) {
+          cleaned = false;
+        } else {
+          delete(versionDir);
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Error removing outdated OpenAPI snapshots from {}", directory, e);
+    }
+    if (cleaned) {
+      cleanedVersion = dataVersion;
+    }
+  }
+
+  private static void delete(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          log.debug("Could not delete {}", path, e);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.etendoerp.openapi.cache;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * Placeholders written in a JSON specification in place of the values that depend on the request, such as the server
+ * URL.
+ * <p>
+ * A specification generated with the placeholders does not depend on any host, so it is generated, cached and stored
+ * in a snapshot once. It is rendered for a host by replacing its placeholders with the values of the host, escaped as
+ * JSON string content, into a new {@link CachedSpec}. The rendered specification is cached under the key of the host,
+ * so each host renders it only once until it is invalidated.
+ */
+public final class SpecTemplate {
+
+  private final String[] placeholders;
+
+  /**
+   * Creates a template with the given placeholders.
+   *
+   * @param placeholders
+   *     the placeholders, the values given to {@link #render(CachedSpec, String...)} replace them in the same order
+   */
+  public SpecTemplate(String... placeholders) {
+    this.placeholders = placeholders.clone();
+  }
+
+  /**
+   * Returns the given specification with the placeholders replaced by the given values.
+   *
+   * @param spec
+   *     the specification generated with the placeholders inside its strings
+   * @param values
+   *     the values of the placeholders, not escaped
+   * @return the rendered specification
+   */
+  public CachedSpec render(CachedSpec spec, String... values) {
+    String[] escaped = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      escaped[i] = new String(JsonStringEncoder.getInstance().quoteAsString(values[i]));
+    }
+    return new CachedSpec(StringUtils.replaceEach(spec.asString(), placeholders, escaped));
+  }
+}
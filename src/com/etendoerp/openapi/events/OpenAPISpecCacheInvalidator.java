@@ -0,0 +1,212 @@
+package com.etendoerp.openapi.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.enterprise.event.Observes;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.criterion.Restrictions;
+import org.openbravo.base.model.Entity;
+import org.openbravo.base.model.ModelProvider;
+import org.openbravo.base.model.Property;
+import org.openbravo.base.structure.BaseOBObject;
+import org.openbravo.client.kernel.event.EntityDeleteEvent;
+import org.openbravo.client.kernel.event.EntityNewEvent;
+import org.openbravo.client.kernel.event.EntityPersistenceEvent;
+import org.openbravo.client.kernel.event.EntityPersistenceEventObserver;
+import org.openbravo.client.kernel.event.EntityUpdateEvent;
+import org.openbravo.client.kernel.event.TransactionCompletedEvent;
+import org.openbravo.dal.core.OBContext;
+import org.openbravo.dal.service.OBDal;
+import org.openbravo.model.ad.system.Client;
+
+import com.etendoerp.openapi.ClientScope;
+import com.etendoerp.openapi.cache.ClusterSpecVersions;
+import com.etendoerp.openapi.cache.SpecInvalidation;
+import com.etendoerp.openapi.data.OpenAPIRequest;
+import com.etendoerp.openapi.data.OpenApiFlow;
+import com.etendoerp.openapi.data.OpenApiFlowPoint;
+import com.etendoerp.openapi.model.OpenAPIEndpointRegistry;
+
+/**
+ * Invalidates the cached OpenAPI specifications when a flow, a flow point or a request changes.
+ * <p>
+ * The {@link OpenAPIEndpointRegistry} is invalidated too, as the tags of the default request endpoints and the
+ * fragments built by the endpoints depend on the flows.
+ * <p>
+ * Only the tags of the flows touched by the change are invalidated, in the specifications of the clients of those
+ * flows. When a flow point is moved to another flow, or a flow is renamed or moved to another client, the previous
+ * flow, name and client are invalidated too. The invalidation is done when the change is flushed and again when its
+ * transaction completes, so a specification generated in between with the previous data is not kept in the cache.
+ * <p>
+ * The versions of the changed tags are also increased in the ETAPI_OPENAPI_VERSION table, in the same transaction,
+ * so the other nodes of a cluster invalidate them too, see {@link ClusterSpecVersions}.
+ */
+public class OpenAPISpecCacheInvalidator extends EntityPersistenceEventObserver {
+
+  private static Entity[] entities = {
+      ModelProvider.getInstance().getEntity(OpenApiFlow.class),
+      ModelProvider.getInstance().getEntity(OpenApiFlowPoint.class),
+      ModelProvider.getInstance().getEntity(OpenAPIRequest.class) };
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final ThreadLocal<Set<String>> pendingTags = new ThreadLocal<>();
+  private static final ThreadLocal<Set<String>> pendingClients = new ThreadLocal<>();
+
+  @Override
+  protected Entity[] getObservedEntities() {
+    return entities;
+  }
+
+  public void onSave(@Observes EntityNewEvent event) {
+    if (!isValidEvent(event)) {
+      return;
+    }
+    List<OpenApiFlow> flows = getAffectedFlows(event);
+    invalidate(getTags(flows), getClientIds(flows));
+  }
+
+  public void onUpdate(@Observes EntityUpdateEvent event) {
+    if (!isValidEvent(event)) {
+      return;
+    }
+    List<OpenApiFlow> flows = new ArrayList<>(getAffectedFlows(event));
+    BaseOBObject target = event.getTargetInstance();
+    if (target instanceof OpenApiFlowPoint) {
+      Property flowProperty = entities[1].getProperty(OpenApiFlowPoint.PROPERTY_ETAPIOPENAPIFLOW);
+      Object previousFlow = event.getPreviousState(flowProperty);
+      if (previousFlow instanceof OpenApiFlow && !flows.contains(previousFlow)) {
+        flows.add((OpenApiFlow) previousFlow);
+      }
+    }
+    Set<String> tags = getTags(flows);
+    Set<String> clientIds = getClientIds(flows);
+    if (target instanceof OpenApiFlow) {
+      Property nameProperty = entities[0].getProperty(OpenApiFlow.PROPERTY_NAME);
+      addTag(tags, (String) event.getPreviousState(nameProperty));
+      Property clientProperty = entities[0].getProperty(OpenApiFlow.PROPERTY_CLIENT);
+      Object previousClient = event.getPreviousState(clientProperty);
+      if (previousClient instanceof Client) {
+        clientIds.add(((Client) previousClient).getId());
+      }
+    }
+    invalidate(tags, clientIds);
+  }
+
+  public void onDelete(@Observes EntityDeleteEvent event) {
+    if (!isValidEvent(event)) {
+      return;
+    }
+    List<OpenApiFlow> flows = getAffectedFlows(event);
+    invalidate(getTags(flows), getClientIds(flows));
+  }
+
+  /**
+   * Invalidates again the tags changed in the completed transaction, discarding any specification generated before
+   * the changes were committed.
+   *
+   * @param event
+   *     the transaction completed event
+   */
+  public void onTransactionCompleted(@Observes TransactionCompletedEvent event) {
+    Set<String> tags = pendingTags.get();
+    Set<String> clientIds = pendingClients.get();
+    if (tags == null) {
+      return;
+    }
+    pendingTags.remove();
+    pendingClients.remove();
+    SpecInvalidation.invalidate(tags, clientIds);
+  }
+
+  private void invalidate(Set<String> tags, Set<String> clientIds) {
+    logger.debug("OpenAPI definition changed, invalidating tags {} of clients {}", tags, clientIds);
+    SpecInvalidation.invalidate(tags, clientIds);
+    ClusterSpecVersions.getInstance().bump(tags);
+    Set<String> pending = pendingTags.get();
+    if (pending == null) {
+      pending = new HashSet<>();
+      pendingTags.set(pending);
+      pendingClients.set(new HashSet<>());
+    }
+    pending.addAll(tags);
+    pendingClients.get().addAll(clientIds);
+  }
+
+  /**
+   * Returns the flows whose specification depends on the instance of the event.
+   *
+   * @param event
+   *     the persistence event
+   * @return the affected flows
+   */
+  List<OpenApiFlow> getAffectedFlows(EntityPersistenceEvent event) {
+    BaseOBObject target = event.getTargetInstance();
+    if (target instanceof OpenApiFlow) {
+      return List.of((OpenApiFlow) target);
+    } else if (target instanceof OpenApiFlowPoint) {
+      OpenApiFlow flow = ((OpenApiFlowPoint) target).getEtapiOpenapiFlow();
+      return flow != null ? List.of(flow) : Collections.emptyList();
+    } else if (target instanceof OpenAPIRequest) {
+      return getRequestFlows((OpenAPIRequest) target);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Returns the names of the given flows, which are the tags of their specifications.
+   *
+   * @param flows
+   *     the affected flows
+   * @return the affected tags
+   */
+  Set<String> getTags(List<OpenApiFlow> flows) {
+    Set<String> tags = new HashSet<>();
+    flows.forEach(flow -> addTag(tags, flow.getName()));
+    return tags;
+  }
+
+  /**
+   * Returns the clients of the given flows, so only the specifications of those clients are invalidated. A flow
+   * without client is reported as a system flow, which invalidates the specifications of every client.
+   *
+   * @param flows
+   *     the affected flows
+   * @return the ids of the affected clients
+   */
+  Set<String> getClientIds(List<OpenApiFlow> flows) {
+    Set<String> clientIds = new HashSet<>();
+    for (OpenApiFlow flow : flows) {
+      clientIds.add(flow.getClient() != null ? flow.getClient().getId() : ClientScope.SYSTEM_CLIENT_ID);
+    }
+    return clientIds;
+  }
+
+  private List<OpenApiFlow> getRequestFlows(OpenAPIRequest request) {
+    try {
+      OBContext.setAdminMode();
+      return OBDal.getInstance()
+          .createCriteria(OpenApiFlowPoint.class)
+          .add(Restrictions.eq(OpenApiFlowPoint.PROPERTY_ETAPIOPENAPIREQ, request))
+          .setFilterOnActive(false)
+          .list()
+          .stream()
+          .map(OpenApiFlowPoint::getEtapiOpenapiFlow)
+          .collect(Collectors.toList());
+    } finally {
+      OBContext.restorePreviousMode();
+    }
+  }
+
+  private static void addTag(Set<String> tags, String name) {
+    if (name != null) {
+      tags.add(name);
+    }
+  }
+}
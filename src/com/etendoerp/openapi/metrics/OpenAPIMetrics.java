@@ -0,0 +1,364 @@
+package com.etendoerp.openapi.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.openbravo.dal.core.SessionHandler;
+
+import com.etendoerp.openapi.OpenAPIProperties;
+
+/**
+ * Counters and timers of the generation and serving of the specifications, so the cost of the specifications can be
+ * followed in production.
+ * <p>
+ * Each phase of the generation, see {@link Phase}, and each endpoint contributing fragments has its own
+ * {@link TimerSnapshot timer}, together with the cache hits and misses, the bytes served and the global DAL queries
+ * prepared while the generations ran. The metrics are published through JMX as {@value #OBJECT_NAME} and in the
+ * metrics view of the controller. They are recorded unless the {@value OpenAPIProperties#METRICS_ENABLED} property
+ * disables them.
+ * <p>
+ * DAL queries are read from the Hibernate statistics, which are global to the session factory, so they are only
+ * counted when the statistics are enabled, and include the statements run by other threads during the generation.
+ * They are published as the global DAL queries to make it clear they are not the queries of the generation alone.
+ * <p>
+ * The phases and the cache status are also added to the {@link ServerTiming} of the current request, if any, whether
+ * the metrics are enabled or not.
+ */
+public class OpenAPIMetrics implements OpenAPIMetricsMXBean {
+
+  /**
+   * Name of the bean in the platform MBean server.
+   */
+  public static final String OBJECT_NAME = "com.etendoerp.openapi:type=OpenAPIMetrics";
+
+  private static final String PHASE_PREFIX = "phase.";
+  private static final String ENDPOINT_PREFIX = "endpoint.";
+  private static final Logger log = LogManager.getLogger(OpenAPIMetrics.class);
+
+  private static OpenAPIMetrics instance;
+
+  private final boolean enabled;
+  private final Map<String, PhaseTimer> timers = new ConcurrentHashMap<>();
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder bytesServed = new LongAdder();
+  private final LongAdder globalDalQueries = new LongAdder();
+
+  /**
+   * Phases of the generation of a specification.
+   */
+  public enum Phase {
+
+    /**
+     * Loading of the flows from the DAL.
+     */
+    FLOWS,
+
+    /**
+     * Copy of the definition found by the swagger-core reader scan, which is run by the first generation.
+     */
+    READER_SCAN,
+
+    /**
+     * Info and servers block.
+     */
+    INIT,
+
+    /**
+     * Security schemes and requirements.
+     */
+    SECURITY,
+
+    /**
+     * Merge of the endpoint fragments, including the build of those not kept by the registry.
+     */
+    ENDPOINTS,
+
+    /**
+     * Login endpoint.
+     */
+    LOGIN,
+
+    /**
+     * Serialization, including the compact profile and the schema deduplication.
+     */
+    SERIALIZATION,
+
+    /**
+     * Whole generation, from the reader scan to the serialization.
+     */
+    GENERATION
+  }
+
+  /**
+   * Creates the metrics.
+   *
+   * @param enabled
+   *     whether the metrics are recorded
+   */
+  OpenAPIMetrics(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns the metrics shared by all the OpenAPI controllers, registering them in the platform MBean server the
+   * first time.
+   *
+   * @return the metrics instance
+   */
+  public static synchronized OpenAPIMetrics getInstance() {
+    if (instance == null) {
+      instance = new OpenAPIMetrics(OpenAPIProperties.getBooleanProperty(OpenAPIProperties.METRICS_ENABLED, true));
+      if (instance.isEnabled()) {
+        register(instance);
+      }
+    }
+    return instance;
+  }
+
+  private static void register(OpenAPIMetrics metrics) {
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+      }
+    } catch (JMException e) {
+      log.warn("Could not register the OpenAPI metrics in JMX", e);
+    }
+  }
+
+  /**
+   * Checks if the metrics are recorded.
+   *
+   * @return true if the metrics are enabled, false otherwise
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Records a run of a phase of the generation.
+   *
+   * @param phase
+   *     the phase
+   * @param startNanos
+   *     the value of {@link System#nanoTime()} when the phase started
+   */
+  public void record(Phase phase, long startNanos) {
+    String name = phase.name().toLowerCase();
+    record(PHASE_PREFIX + name, name, startNanos);
+  }
+
+  /**
+   * Records the build of the fragment of an endpoint.
+   *
+   * @param endpoint
+   *     the endpoint that built the fragment
+   * @param startNanos
+   *     the value of {@link System#nanoTime()} when the build started
+   */
+  public void recordEndpoint(Object endpoint, long startNanos) {
+    String name = endpoint.getClass().getSimpleName();
+    int proxySuffix = name.indexOf('$');
+    String timer = ENDPOINT_PREFIX + (proxySuffix > 0 ? name.substring(0, proxySuffix) : name);
+    record(timer, timer, startNanos);
+  }
+
+  private void record(String timer, String timingName, long startNanos) {
+    long nanos = System.nanoTime() - startNanos;
+    if (enabled) {
+      timers.computeIfAbsent(timer, t -> new PhaseTimer()).record(nanos);
+    }
+    ServerTiming timing = ServerTiming.getCurrent();
+    if (timing != null) {
+      timing.add(timingName, nanos);
+    }
+  }
+
+  /**
+   * Records a request answered with a cached specification.
+   */
+  public void recordCacheHit() {
+    if (enabled) {
+      cacheHits.increment();
+    }
+    setCacheStatus("hit");
+  }
+
+  /**
+   * Records a request whose specification was not cached, or was stale and regenerated within the time budget.
+   */
+  public void recordCacheMiss() {
+    if (enabled) {
+      cacheMisses.increment();
+    }
+    setCacheStatus("miss");
+  }
+
+  /**
+   * Records a request answered with a stale specification while it is regenerated.
+   */
+  public void recordStaleHit() {
+    if (enabled) {
+      staleHits.increment();
+    }
+    setCacheStatus("stale");
+  }
+
+  private static void setCacheStatus(String status) {
+    ServerTiming timing = ServerTiming.getCurrent();
+    if (timing != null) {
+      timing.setCacheStatus(status);
+    }
+  }
+
+  /**
+   * Records the bytes of a specification sent to a client.
+   *
+   * @param bytes
+   *     the length of the response body
+   */
+  public void recordBytesServed(long bytes) {
+    if (enabled) {
+      bytesServed.add(bytes);
+    }
+  }
+
+  /**
+   * Returns a stream that records the bytes written to the given one as served, for the responses whose length is not
+   * known in advance.
+   *
+   * @param out
+   *     the response stream
+   * @return the counting stream
+   */
+  public OutputStream countBytesServed(OutputStream out) {
+    if (!enabled) {
+      return out;
+    }
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        bytesServed.increment();
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytesServed.add(len);
+      }
+    };
+  }
+
+  /**
+   * Returns the number of SQL statements prepared until now, to be given to {@link #recordDalQueries(long)} when the
+   * generation ends.
+   *
+   * @return the prepared statements, or -1 if the Hibernate statistics are not available
+   */
+  public long getStatementCount() {
+    Statistics statistics = enabled ? getStatistics() : null;
+    return statistics == null ? -1 : statistics.getPrepareStatementCount();
+  }
+
+  /**
+   * Records the SQL statements prepared by every thread since the given count was read.
+   *
+   * @param startCount
+   *     the value returned by {@link #getStatementCount()} when the generation started
+   */
+  public void recordDalQueries(long startCount) {
+    if (startCount < 0) {
+      return;
+    }
+    long count = getStatementCount();
+    if (count >= startCount) {
+      globalDalQueries.add(count - startCount);
+    }
+  }
+
+  private static Statistics getStatistics() {
+    if (!SessionHandler.isSessionHandlerPresent()) {
+      return null;
+    }
+    Session session = SessionHandler.getInstance().getSession();
+    Statistics statistics = session == null ? null : session.getSessionFactory().getStatistics();
+    return statistics != null && statistics.isStatisticsEnabled() ? statistics : null;
+  }
+
+  @Override
+  public long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  @Override
+  public long getCacheMisses() {
+    return cacheMisses.sum();
+  }
+
+  @Override
+  public long getStaleHits() {
+    return staleHits.sum();
+  }
+
+  @Override
+  public long getBytesServed() {
+    return bytesServed.sum();
+  }
+
+  @Override
+  public long getGlobalDalQueries() {
+    return globalDalQueries.sum();
+  }
+
+  @Override
+  public Map<String, TimerSnapshot> getTimers() {
+    Map<String, TimerSnapshot> snapshots = new TreeMap<>();
+    timers.forEach((name, timer) -> snapshots.put(name, timer.snapshot()));
+    return Collections.unmodifiableMap(snapshots);
+  }
+
+  @Override
+  public void reset() {
+    timers.clear();
+    cacheHits.reset();
+    cacheMisses.reset();
+    staleHits.reset();
+    bytesServed.reset();
+    globalDalQueries.reset();
+  }
+
+  /**
+   * Returns every counter and timer, in the order they are published in the metrics view.
+   *
+   * @return the metrics by name
+   */
+  public Map<String, Object> getSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("enabled", enabled);
+    snapshot.put("cacheHits", getCacheHits());
+    snapshot.put("cacheMisses", getCacheMisses());
+    snapshot.put("staleHits", getStaleHits());
+    snapshot.put("bytesServed", getBytesServed());
+    snapshot.put("globalDalQueries", getGlobalDalQueries());
+    snapshot.put("timers", getTimers());
+    return snapshot;
+  }
+}
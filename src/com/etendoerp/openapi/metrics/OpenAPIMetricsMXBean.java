@@ -0,0 +1,59 @@
+package com.etendoerp.openapi.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link OpenAPIMetrics}, registered in the platform MBean server as
+ * {@value OpenAPIMetrics#OBJECT_NAME}.
+ */
+public interface OpenAPIMetricsMXBean {
+
+  /**
+   * Returns the number of requests answered with a cached specification.
+   *
+   * @return the cache hits
+   */
+  long getCacheHits();
+
+  /**
+   * Returns the number of requests whose specification was not cached, or was stale and regenerated within the time
+   * budget.
+   *
+   * @return the cache misses
+   */
+  long getCacheMisses();
+
+  /**
+   * Returns the number of requests answered with a stale specification while it was regenerated.
+   *
+   * @return the stale hits
+   */
+  long getStaleHits();
+
+  /**
+   * Returns the number of bytes of the specifications sent to the clients, as encoded in the responses.
+   *
+   * @return the bytes served
+   */
+  long getBytesServed();
+
+  /**
+   * Returns the number of SQL statements prepared by every thread of the server while specifications were generated,
+   * read from the global Hibernate statistics. It is an upper bound of the queries run by the generations.
+   *
+   * @return the global DAL queries
+   */
+  long getGlobalDalQueries();
+
+  /**
+   * Returns the timers of the phases of the generation and of each endpoint contributor, by name.
+   *
+   * @return the counters of each timer
+   */
+  Map<String, TimerSnapshot> getTimers();
+
+  /**
+   * Resets every counter and timer.
+   */
+  void reset();
+}
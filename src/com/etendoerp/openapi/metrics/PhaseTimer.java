@@ -0,0 +1,56 @@
+package com.etendoerp.openapi.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the runs of a phase of the specification generation and keeps the histogram of their durations.
+ * <p>
+ * Durations are counted in fixed buckets, in milliseconds, so recording a run does not allocate nor lock and the
+ * timer takes the same memory however many runs it records.
+ */
+final class PhaseTimer {
+
+  static final long[] BUCKET_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+  /**
+   * Records a run of the phase.
+   *
+   * @param nanos
+   *     the duration of the run, in nanoseconds
+   */
+  void record(long nanos) {
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulateAndGet(nanos, Math::max);
+    buckets.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMillis(nanos)));
+  }
+
+  private static int getBucket(long millis) {
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket]) {
+      bucket++;
+    }
+    return bucket;
+  }
+
+  /**
+   * Returns the runs recorded until now.
+   *
+   * @return a copy of the counters of the timer
+   */
+  TimerSnapshot snapshot() {
+    long[] counts = new long[buckets.length()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return new TimerSnapshot(count.sum(), totalNanos.sum(), maxNanos.get(), counts);
+  }
+}
@@ -0,0 +1,129 @@
+package com.etendoerp.openapi.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Durations of the phases run to answer a single request, sent in its Server-Timing header so browsers and monitors
+ * can tell where the time of a slow specification was spent.
+ * <p>
+ * The timing of a request is bound to its thread by {@link #start()}, and every phase recorded by the
+ * {@link OpenAPIMetrics} while it is bound is added to it. Tasks run in other threads for the request are bound to
+ * the same timing with {@link #wrap(Supplier)}. Phases run several times, such as flow loading, are added up.
+ */
+public final class ServerTiming {
+
+  /**
+   * Name of the response header.
+   */
+  public static final String HEADER = "Server-Timing";
+
+  private static final String TOTAL = "total";
+  private static final String CACHE = "cache";
+  private static final ThreadLocal<ServerTiming> current = new ThreadLocal<>();
+
+  private final long startNanos = System.nanoTime();
+  private final Map<String, Long> durations = new LinkedHashMap<>();
+  private String cacheStatus;
+
+  private ServerTiming() {
+  }
+
+  /**
+   * Starts the timing of the request served by the current thread.
+   *
+   * @return the timing bound to the current thread
+   */
+  public static ServerTiming start() {
+    ServerTiming timing = new ServerTiming();
+    current.set(timing);
+    return timing;
+  }
+
+  /**
+   * Returns the timing of the request served by the current thread.
+   *
+   * @return the timing, or null if the request is not timed
+   */
+  public static ServerTiming getCurrent() {
+    return current.get();
+  }
+
+  /**
+   * Ends the timing of the request served by the current thread.
+   */
+  public static void end() {
+    current.remove();
+  }
+
+  /**
+   * Returns a task that runs the given one bound to the timing of the current thread, so the phases it runs in
+   * another thread are added to the request that submitted it.
+   *
+   * @param task
+   *     the task
+   * @param <T>
+   *     the type of the result
+   * @return the task itself when the current request is not timed, the bound task otherwise
+   */
+  public static <T> Supplier<T> wrap(Supplier<T> task) {
+    ServerTiming timing = current.get();
+    if (timing == null) {
+      return task;
+    }
+    return () -> {
+      ServerTiming previous = current.get();
+      current.set(timing);
+      try {
+        return task.get();
+      } finally {
+        current.set(previous);
+      }
+    };
+  }
+
+  /**
+   * Adds the duration of a phase.
+   *
+   * @param name
+   *     the name of the phase, a valid header token
+   * @param nanos
+   *     the duration, in nanoseconds
+   */
+  synchronized void add(String name, long nanos) {
+    durations.merge(name, nanos, Long::sum);
+  }
+
+  /**
+   * Sets whether the specification was found in the cache.
+   *
+   * @param status
+   *     "hit", "miss" or "stale"
+   */
+  synchronized void setCacheStatus(String status) {
+    cacheStatus = status;
+  }
+
+  /**
+   * Returns the value of the Server-Timing header, with the duration of each phase in milliseconds, the time elapsed
+   * since the timing started and whether the specification was cached.
+   *
+   * @return the header value
+   */
+  public synchronized String toHeader() {
+    StringBuilder header = new StringBuilder();
+    if (cacheStatus != null) {
+      header.append(CACHE).append(";desc=").append(cacheStatus).append(", ");
+    }
+    durations.forEach((name, nanos) -> appendMetric(header, name, nanos).append(", "));
+    return appendMetric(header, TOTAL, System.nanoTime() - startNanos).toString();
+  }
+
+  private static StringBuilder appendMetric(StringBuilder header, String name, long nanos) {
+    double millis = (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    return header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.1f", millis));
+  }
+}
@@ -0,0 +1,83 @@
+package com.etendoerp.openapi.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters of a phase of the specification generation at a given moment, as published through JMX and the metrics
+ * view of the controller.
+ */
+public final class TimerSnapshot {
+
+  private static final String OVERFLOW_BUCKET = "inf";
+
+  private final long count;
+  private final long totalNanos;
+  private final long maxNanos;
+  private final long[] buckets;
+
+  TimerSnapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+    this.count = count;
+    this.totalNanos = totalNanos;
+    this.maxNanos = maxNanos;
+    this.buckets = buckets;
+  }
+
+  /**
+   * Returns the number of recorded runs.
+   *
+   * @return the number of runs
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the time spent in all the recorded runs.
+   *
+   * @return the total duration, in milliseconds
+   */
+  public double getTotalMillis() {
+    return toMillis(totalNanos);
+  }
+
+  /**
+   * Returns the mean duration of the recorded runs.
+   *
+   * @return the mean duration, in milliseconds, 0 if there are no runs
+   */
+  public double getMeanMillis() {
+    return count == 0 ? 0 : toMillis(totalNanos) / count;
+  }
+
+  /**
+   * Returns the duration of the slowest recorded run.
+   *
+   * @return the maximum duration, in milliseconds
+   */
+  public double getMaxMillis() {
+    return toMillis(maxNanos);
+  }
+
+  /**
+   * Returns the histogram of the durations. Each bucket is named after its upper bound in milliseconds and counts
+   * the runs longer than the previous bound and up to its own, the last one, "inf", counts the runs over the last
+   * bound.
+   *
+   * @return the number of runs of each bucket, in increasing order of duration
+   */
+  public Map<String, Long> getBuckets() {
+    Map<String, Long> histogram = new LinkedHashMap<>();
+    for (int i = 0; i < buckets.length; i++) {
+      String name = i < PhaseTimer.BUCKET_BOUNDS.length ? Long.toString(PhaseTimer.BUCKET_BOUNDS[i]) : OVERFLOW_BUCKET;
+      histogram.put(name, buckets[i]);
+    }
+    return Collections.unmodifiableMap(histogram);
+  }
+
+  private static double toMillis(long nanos) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
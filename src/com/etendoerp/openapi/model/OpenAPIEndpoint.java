@@ -1,5 +1,7 @@
 package com.etendoerp.openapi.model;
 
+import java.util.Collection;
+
 import io.swagger.v3.oas.models.OpenAPI;
 
 /**
@@ -23,4 +25,62 @@ public interface OpenAPIEndpoint {
    *     the OpenAPI object to be added
    */
   void add(OpenAPI openAPI);
-}
\ No newline at end of file
+
+  /**
+   * Returns the tags this endpoint adds documentation to, so the {@link OpenAPIEndpointRegistry} can index it
+   * without calling {@link #isValid(String)} on every request.
+   * <p>
+   * The default implementation returns null, meaning the tags are not known in advance and {@link #isValid(String)}
+   * is called for each requested tag.
+   *
+   * @return the supported tags, or null if they are not known
+   */
+  default Collection<String> getSupportedTags() {
+    return null;
+  }
+
+  /**
+   * Checks if the documentation of this endpoint depends on the client of the request, see
+   * {@link com.etendoerp.openapi.ClientScope}. The {@link OpenAPIEndpointRegistry} keeps the fragments of these
+   * endpoints for each client, and shares those of the other endpoints between all of them.
+   * <p>
+   * The default implementation returns false.
+   *
+   * @return true if the documentation is built for the client of the current context, false otherwise
+   */
+  default boolean isClientScoped() {
+    return false;
+  }
+
+  /**
+   * Adds the documentation of this endpoint for the requested tag to the given OpenAPI object.
+   * <p>
+   * The default implementation delegates on {@link #add(OpenAPI)}. Endpoints that document several tags should
+   * override it to add only the documentation of the requested one.
+   *
+   * @param openAPI
+   *     the OpenAPI object to be added
+   * @param tag
+   *     the requested tag, or null if the full specification is requested
+   */
+  default void add(OpenAPI openAPI, String tag) {
+    add(openAPI);
+  }
+
+  /**
+   * Builds the immutable fragment with the documentation of this endpoint for the requested tag.
+   * <p>
+   * Fragments are kept by the {@link OpenAPIEndpointRegistry} until the flows of the tag change, so this method is
+   * not called for every specification. The default implementation adapts {@link #add(OpenAPI, String)}, running it
+   * on an empty document and taking its paths, components and tags.
+   *
+   * @param tag
+   *     the requested tag, or null if the full specification is requested
+   * @return the fragment of this endpoint
+   */
+  default OpenAPIFragment buildFragment(String tag) {
+    OpenAPI openAPI = new OpenAPI();
+    add(openAPI, tag);
+    return OpenAPIFragment.from(openAPI);
+  }
+}
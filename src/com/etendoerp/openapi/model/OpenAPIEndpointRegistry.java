@@ -0,0 +1,496 @@
+package com.etendoerp.openapi.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openbravo.base.weld.WeldUtils;
+
+import com.etendoerp.openapi.ClientScope;
+import com.etendoerp.openapi.OpenAPIGenerationExecutor;
+import com.etendoerp.openapi.cache.CachedSpec;
+import com.etendoerp.openapi.cache.SpecFormat;
+import com.etendoerp.openapi.metrics.OpenAPIMetrics;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.PathItem;
+
+/**
+ * Registry of the {@link OpenAPIEndpoint} beans, indexed by the tags they document.
+ * <p>
+ * The beans are looked up and their {@link OpenAPIEndpoint#getSupportedTags()} are read once, when the registry is
+ * first used after being built or refreshed, so resolving the endpoints of a tag is a map lookup. Endpoints that do
+ * not declare their tags are still asked with {@link OpenAPIEndpoint#isValid(String)}. The registry is refreshed
+ * when the flows change, as the tags of some endpoints depend on them.
+ * <p>
+ * The registry also keeps the {@link OpenAPIFragment} built by each endpoint for each tag, so specifications are
+ * assembled by merging fragments instead of running the endpoints again. The fragments of a tag, and those of the
+ * full specification, are discarded when the flows of the tag change. The operations of the full specification are
+ * indexed when its fragments are assembled, so a single operation can be looked up without building the document,
+ * and its tags are summarized in a {@link TagCatalog} the first time it is requested. The catalog is also kept
+ * serialized in each format it is served in.
+ * <p>
+ * The fragments of the endpoints whose documentation depends on the client, see
+ * {@link OpenAPIEndpoint#isClientScoped()}, are kept for each client of the {@link ClientScope}, as are the operation
+ * index and the tag catalog. The fragments of the other endpoints are shared by every client.
+ */
+public class OpenAPIEndpointRegistry {
+
+  private static final Logger log = LogManager.getLogger(OpenAPIEndpointRegistry.class);
+
+  private static OpenAPIEndpointRegistry instance;
+
+  private volatile Index index;
+  private final Map<FragmentKey, OpenAPIFragment> fragments = new HashMap<>();
+  private long fragmentGeneration;
+  private final Map<String, OperationIndex> operations = new HashMap<>();
+  private final Map<String, TagCatalog> tagCatalogs = new HashMap<>();
+  private final Map<String, Map<SpecFormat, CachedSpec>> catalogDocuments = new HashMap<>();
+
+  /**
+   * Returns the registry shared by all the OpenAPI controllers.
+   *
+   * @return the registry instance
+   */
+  public static synchronized OpenAPIEndpointRegistry getInstance() {
+    if (instance == null) {
+      instance = new OpenAPIEndpointRegistry();
+    }
+    return instance;
+  }
+
+  /**
+   * Returns every registered endpoint, in registration order.
+   *
+   * @return the registered endpoints
+   */
+  public List<OpenAPIEndpoint> getEndpoints() {
+    return getIndex().endpoints;
+  }
+
+  /**
+   * Returns the endpoints that add documentation to the given tag, in registration order.
+   *
+   * @param tag
+   *     the requested tag, or null for the full specification
+   * @return the endpoints documenting the tag
+   */
+  public List<OpenAPIEndpoint> getEndpoints(String tag) {
+    Index current = getIndex();
+    if (tag == null) {
+      return current.endpoints;
+    }
+    List<OpenAPIEndpoint> indexed = current.endpointsByTag.getOrDefault(tag, Collections.emptyList());
+    if (current.probedEndpoints.isEmpty()) {
+      return indexed;
+    }
+    List<OpenAPIEndpoint> result = new ArrayList<>(indexed.size() + current.probedEndpoints.size());
+    for (OpenAPIEndpoint endpoint : current.endpoints) {
+      boolean probed = current.probedEndpoints.contains(endpoint);
+      if ((probed && endpoint.isValid(tag)) || (!probed && indexed.contains(endpoint))) {
+        result.add(endpoint);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the tags declared by the indexed endpoints.
+   *
+   * @return the known tags
+   */
+  public Set<String> getKnownTags() {
+    return getIndex().endpointsByTag.keySet();
+  }
+
+  /**
+   * Returns the fragments of the endpoints that add documentation to the given tag, in registration order.
+   * <p>
+   * The fragments that are not kept yet are built in parallel with the {@link OpenAPIGenerationExecutor}, so the
+   * time to build a specification from scratch depends on the slowest endpoint rather than on the number of them.
+   * The fragments of the endpoints without declared tags are built in the calling thread instead, the same thread
+   * that asked them with {@link OpenAPIEndpoint#isValid(String)}, as they may keep the state of that call for
+   * {@link OpenAPIEndpoint#add(OpenAPI)}. Client scoped endpoints return the fragments of the client of the current
+   * context.
+   *
+   * @param tag
+   *     the requested tag, or null for the full specification
+   * @return the fragments documenting the tag
+   */
+  public List<OpenAPIFragment> getFragments(String tag) {
+    String clientId = ClientScope.getClientId();
+    List<OpenAPIEndpoint> endpoints = getEndpoints(tag);
+    OpenAPIFragment[] result = new OpenAPIFragment[endpoints.size()];
+    List<Integer> missing = new ArrayList<>();
+    long startGeneration;
+    synchronized (fragments) {
+      for (int i = 0; i < result.length; i++) {
+        result[i] = fragments.get(new FragmentKey(endpoints.get(i), tag, clientId));
+        if (result[i] == null) {
+          missing.add(i);
+        }
+      }
+      startGeneration = fragmentGeneration;
+    }
+    if (!missing.isEmpty()) {
+      Set<OpenAPIEndpoint> probedEndpoints = getIndex().probedEndpoints;
+      List<Integer> parallel = new ArrayList<>(missing.size());
+      List<Supplier<OpenAPIFragment>> tasks = new ArrayList<>(missing.size());
+      for (int i : missing) {
+        OpenAPIEndpoint endpoint = endpoints.get(i);
+        if (probedEndpoints.contains(endpoint)) {
+          result[i] = buildFragment(endpoint, tag);
+        } else {
+          parallel.add(i);
+          tasks.add(() -> buildFragment(endpoint, tag));
+        }
+      }
+      List<OpenAPIFragment> built = OpenAPIGenerationExecutor.invokeAll(tasks);
+      for (int i = 0; i < parallel.size(); i++) {
+        result[parallel.get(i)] = built.get(i);
+      }
+      synchronized (fragments) {
+        if (startGeneration == fragmentGeneration) {
+          for (int i : missing) {
+            fragments.putIfAbsent(new FragmentKey(endpoints.get(i), tag, clientId), result[i]);
+          }
+        }
+      }
+    }
+    List<OpenAPIFragment> list = Arrays.asList(result);
+    if (tag == null) {
+      indexOperations(list, clientId, startGeneration);
+    }
+    return list;
+  }
+
+  private void indexOperations(List<OpenAPIFragment> fullFragments, String clientId, long startGeneration) {
+    synchronized (fragments) {
+      if (operations.containsKey(clientId) || startGeneration != fragmentGeneration) {
+        return;
+      }
+    }
+    OperationIndex index = OperationIndex.build(fullFragments);
+    synchronized (fragments) {
+      if (!operations.containsKey(clientId) && startGeneration == fragmentGeneration) {
+        operations.put(clientId, index);
+        log.debug("Indexed {} OpenAPI operations for client {}", index.size(), clientId);
+      }
+    }
+  }
+
+  /**
+   * Returns the operation with the given operation id, with the components it references.
+   * <p>
+   * The operation is found through the index built with the fragments of the full specification, which are
+   * assembled first if they are not kept.
+   *
+   * @param operationId
+   *     the operation id
+   * @return the fragment with the operation, or null if no endpoint defines it
+   */
+  public OpenAPIFragment findOperation(String operationId) {
+    return getOperationIndex().find(operationId);
+  }
+
+  /**
+   * Returns the operation of the given path and method, with the components it references.
+   *
+   * @param path
+   *     the path of the operation
+   * @param method
+   *     the HTTP method of the operation
+   * @return the fragment with the operation, or null if no endpoint defines it
+   */
+  public OpenAPIFragment findOperation(String path, PathItem.HttpMethod method) {
+    return getOperationIndex().find(path, method);
+  }
+
+  /**
+   * Returns the catalog of the tags of the full specification, building it from the fragments of the full
+   * specification if it is not kept.
+   *
+   * @return the tag catalog
+   */
+  public TagCatalog getTagCatalog() {
+    String clientId = ClientScope.getClientId();
+    long startGeneration;
+    synchronized (fragments) {
+      TagCatalog catalog = tagCatalogs.get(clientId);
+      if (catalog != null) {
+        return catalog;
+      }
+      startGeneration = fragmentGeneration;
+    }
+    TagCatalog catalog = TagCatalog.build(getFragments(null));
+    synchronized (fragments) {
+      if (startGeneration == fragmentGeneration) {
+        tagCatalogs.putIfAbsent(clientId, catalog);
+      }
+    }
+    return catalog;
+  }
+
+  /**
+   * Returns the tag catalog of the full specification serialized in the given format, serializing it with the given
+   * writer if it is not kept. It is discarded together with the tag catalog.
+   *
+   * @param format
+   *     the format the catalog is serialized in
+   * @param writer
+   *     serializes the catalog when it is not kept
+   * @return the serialized catalog
+   * @throws IOException
+   *     if an error occurs during serialization
+   */
+  public CachedSpec getTagCatalogDocument(SpecFormat format, CatalogWriter writer) throws IOException {
+    String clientId = ClientScope.getClientId();
+    long startGeneration;
+    synchronized (fragments) {
+      CachedSpec document = catalogDocuments.getOrDefault(clientId, Collections.emptyMap()).get(format);
+      if (document != null) {
+        return document;
+      }
+      startGeneration = fragmentGeneration;
+    }
+    CachedSpec document = writer.write(getTagCatalog(), format);
+    synchronized (fragments) {
+      if (startGeneration == fragmentGeneration) {
+        catalogDocuments.computeIfAbsent(clientId, c -> new EnumMap<>(SpecFormat.class)).putIfAbsent(format, document);
+      }
+    }
+    return document;
+  }
+
+  private OperationIndex getOperationIndex() {
+    String clientId = ClientScope.getClientId();
+    synchronized (fragments) {
+      OperationIndex index = operations.get(clientId);
+      if (index != null) {
+        return index;
+      }
+    }
+    List<OpenAPIFragment> fullFragments = getFragments(null);
+    synchronized (fragments) {
+      OperationIndex index = operations.get(clientId);
+      if (index != null) {
+        return index;
+      }
+    }
+    return OperationIndex.build(fullFragments);
+  }
+
+  /**
+   * Returns the fragment of the given endpoint for the given tag, building it if it is not kept yet.
+   * <p>
+   * A fragment built while its tag was invalidated is returned but not kept, as it may contain the previous data.
+   *
+   * @param endpoint
+   *     a registered endpoint
+   * @param tag
+   *     the requested tag, or null for the full specification
+   * @return the fragment of the endpoint
+   */
+  public OpenAPIFragment getFragment(OpenAPIEndpoint endpoint, String tag) {
+    FragmentKey key = new FragmentKey(endpoint, tag, ClientScope.getClientId());
+    long startGeneration;
+    synchronized (fragments) {
+      OpenAPIFragment fragment = fragments.get(key);
+      if (fragment != null) {
+        return fragment;
+      }
+      startGeneration = fragmentGeneration;
+    }
+    OpenAPIFragment fragment = buildFragment(endpoint, tag);
+    synchronized (fragments) {
+      if (startGeneration == fragmentGeneration) {
+        fragments.putIfAbsent(key, fragment);
+      }
+    }
+    return fragment;
+  }
+
+  private static OpenAPIFragment buildFragment(OpenAPIEndpoint endpoint, String tag) {
+    long start = System.nanoTime();
+    OpenAPIFragment fragment = endpoint.buildFragment(tag);
+    OpenAPIMetrics.getInstance().recordEndpoint(endpoint, start);
+    return fragment != null ? fragment : OpenAPIFragment.EMPTY;
+  }
+
+  /**
+   * Discards the index, the fragments of the given tags and those of the full specification, with its operation
+   * index and tag catalog.
+   *
+   * @param tags
+   *     the tags whose flows changed
+   */
+  public void invalidate(Collection<String> tags) {
+    invalidate(tags, null);
+  }
+
+  /**
+   * Discards the index, the fragments of the given tags and those of the full specification, with its operation
+   * index and tag catalog. The client scoped fragments of the other clients are kept.
+   *
+   * @param tags
+   *     the tags whose flows changed
+   * @param clientIds
+   *     the clients of the changed flows, or null if they are not known
+   */
+  public void invalidate(Collection<String> tags, Collection<String> clientIds) {
+    index = null;
+    synchronized (fragments) {
+      fragments.keySet().removeIf(key -> (key.tag == null || tags.contains(key.tag))
+          && ClientScope.isAffectedBy(key.clientId, clientIds));
+      operations.keySet().removeIf(clientId -> ClientScope.isAffectedBy(clientId, clientIds));
+      tagCatalogs.keySet().removeIf(clientId -> ClientScope.isAffectedBy(clientId, clientIds));
+      catalogDocuments.keySet().removeIf(clientId -> ClientScope.isAffectedBy(clientId, clientIds));
+      fragmentGeneration++;
+    }
+  }
+
+  /**
+   * Discards the index and every fragment, so they are built again the next time they are used.
+   */
+  public void refresh() {
+    index = null;
+    synchronized (fragments) {
+      fragments.clear();
+      operations.clear();
+      tagCatalogs.clear();
+      catalogDocuments.clear();
+      fragmentGeneration++;
+    }
+  }
+
+  private Index getIndex() {
+    Index current = index;
+    if (current == null) {
+      synchronized (this) {
+        current = index;
+        if (current == null) {
+          current = buildIndex();
+          index = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  private Index buildIndex() {
+    List<OpenAPIEndpoint> endpoints = WeldUtils.getInstances(OpenAPIEndpoint.class);
+    Map<String, List<OpenAPIEndpoint>> endpointsByTag = new HashMap<>();
+    Set<OpenAPIEndpoint> probedEndpoints = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (OpenAPIEndpoint endpoint : endpoints) {
+      Collection<String> tags = endpoint.getSupportedTags();
+      if (tags == null) {
+        probedEndpoints.add(endpoint);
+        continue;
+      }
+      for (String tag : tags) {
+        List<OpenAPIEndpoint> tagEndpoints = endpointsByTag.computeIfAbsent(tag, t -> new ArrayList<>());
+        if (!tagEndpoints.contains(endpoint)) {
+          tagEndpoints.add(endpoint);
+        }
+      }
+    }
+    endpointsByTag.replaceAll((tag, tagEndpoints) -> Collections.unmodifiableList(tagEndpoints));
+    Set<Class<?>> registered = new HashSet<>();
+    endpoints.forEach(endpoint -> registered.add(endpoint.getClass()));
+    synchronized (fragments) {
+      if (fragments.keySet().removeIf(key -> !registered.contains(key.endpointClass))) {
+        operations.clear();
+        tagCatalogs.clear();
+        catalogDocuments.clear();
+      }
+    }
+    log.debug("Indexed {} OpenAPI endpoints in {} tags, {} endpoints without declared tags", endpoints.size(),
+        endpointsByTag.size(), probedEndpoints.size());
+    return new Index(Collections.unmodifiableList(new ArrayList<>(endpoints)),
+        Collections.unmodifiableMap(endpointsByTag), probedEndpoints);
+  }
+
+  /**
+   * Serializes a tag catalog, see {@link #getTagCatalogDocument(SpecFormat, CatalogWriter)}.
+   */
+  @FunctionalInterface
+  public interface CatalogWriter {
+
+    /**
+     * Serializes the given catalog.
+     *
+     * @param catalog
+     *     the tag catalog of the full specification
+     * @param format
+     *     the format the catalog is serialized in
+     * @return the serialized catalog
+     * @throws IOException
+     *     if an error occurs during serialization
+     */
+    CachedSpec write(TagCatalog catalog, SpecFormat format) throws IOException;
+  }
+
+  /**
+   * Immutable snapshot of the registered endpoints.
+   */
+  private static class Index {
+    private final List<OpenAPIEndpoint> endpoints;
+    private final Map<String, List<OpenAPIEndpoint>> endpointsByTag;
+    private final Set<OpenAPIEndpoint> probedEndpoints;
+
+    Index(List<OpenAPIEndpoint> endpoints, Map<String, List<OpenAPIEndpoint>> endpointsByTag,
+        Set<OpenAPIEndpoint> probedEndpoints) {
+      this.endpoints = endpoints;
+      this.endpointsByTag = endpointsByTag;
+      this.probedEndpoints = probedEndpoints;
+    }
+  }
+
+  /**
+   * Identifies the fragment of an endpoint for a tag, and for a client if the endpoint is client scoped. Endpoints are
+   * identified by their bean class, so the fragments of dependent beans, which are new instances each time the index
+   * is built, are kept.
+   */
+  private static class FragmentKey {
+    private final Class<?> endpointClass;
+    private final String tag;
+    private final String clientId;
+
+    FragmentKey(OpenAPIEndpoint endpoint, String tag, String clientId) {
+      this.endpointClass = endpoint.getClass();
+      this.tag = tag;
+      this.clientId = endpoint.isClientScoped() ? clientId : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof FragmentKey)) {
+        return false;
+      }
+      FragmentKey other = (FragmentKey) o;
+      return endpointClass == other.endpointClass && Objects.equals(tag, other.tag)
+          && Objects.equals(clientId, other.clientId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(endpointClass, tag, clientId);
+    }
+  }
+}
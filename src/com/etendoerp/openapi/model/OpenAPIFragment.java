@@ -0,0 +1,442 @@
+package com.etendoerp.openapi.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.etendoerp.openapi.OpenAPISerializer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.Paths;
+import io.swagger.v3.oas.models.callbacks.Callback;
+import io.swagger.v3.oas.models.examples.Example;
+import io.swagger.v3.oas.models.headers.Header;
+import io.swagger.v3.oas.models.info.Info;
+import io.swagger.v3.oas.models.links.Link;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import io.swagger.v3.oas.models.security.SecurityRequirement;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+import io.swagger.v3.oas.models.servers.Server;
+import io.swagger.v3.oas.models.tags.Tag;
+
+/**
+ * Immutable piece of an OpenAPI specification produced by an {@link OpenAPIEndpoint}: its paths, its components and
+ * its tags, together with the info, servers, security requirements and extensions of the document, if the endpoint
+ * set them.
+ * <p>
+ * Fragments are built once and shared by every specification that includes them, so they are merged into a document
+ * with {@link #mergeInto(OpenAPI)} instead of running the endpoint again. The model objects of a fragment must not be
+ * modified once it is built: merging only copies references into the maps and lists of the target document, and path
+ * items defined by several fragments are combined into a new path item.
+ */
+public final class OpenAPIFragment {
+
+  /**
+   * Fragment without any content.
+   */
+  public static final OpenAPIFragment EMPTY = new OpenAPIFragment(Collections.emptyMap(), new Components(),
+      Collections.emptyList());
+
+  private static final String COMPONENTS_REF_PREFIX = "#/components/";
+  private static final Logger log = LogManager.getLogger(OpenAPIFragment.class);
+
+  private final Map<String, PathItem> paths;
+  private final Components components;
+  private final List<Tag> tags;
+  private Info info;
+  private List<Server> servers;
+  private List<SecurityRequirement> security;
+  private Map<String, Object> extensions;
+
+  private OpenAPIFragment(Map<String, PathItem> paths, Components components, List<Tag> tags) {
+    this.paths = paths;
+    this.components = components;
+    this.tags = tags;
+  }
+
+  /**
+   * Creates a fragment with the paths, components, tags, info, servers, security requirements and extensions added
+   * to the given document. The document must not be used after creating the fragment.
+   *
+   * @param openAPI
+   *     the document filled by an endpoint
+   * @return the fragment with the content of the document
+   */
+  public static OpenAPIFragment from(OpenAPI openAPI) {
+    Map<String, PathItem> paths = openAPI.getPaths() == null ? Collections.emptyMap()
+        : Collections.unmodifiableMap(new LinkedHashMap<>(openAPI.getPaths()));
+    List<Tag> tags = openAPI.getTags() == null ? Collections.emptyList()
+        : Collections.unmodifiableList(new ArrayList<>(openAPI.getTags()));
+    Components source = openAPI.getComponents();
+    Components components = new Components();
+    if (source != null) {
+      components.setSchemas(copy(source.getSchemas()));
+      components.setResponses(copy(source.getResponses()));
+      components.setParameters(copy(source.getParameters()));
+      components.setExamples(copy(source.getExamples()));
+      components.setRequestBodies(copy(source.getRequestBodies()));
+      components.setHeaders(copy(source.getHeaders()));
+      components.setSecuritySchemes(copy(source.getSecuritySchemes()));
+      components.setLinks(copy(source.getLinks()));
+      components.setCallbacks(copy(source.getCallbacks()));
+    }
+    OpenAPIFragment fragment = new OpenAPIFragment(paths, components, tags);
+    fragment.info = openAPI.getInfo();
+    fragment.servers = copy(openAPI.getServers());
+    fragment.security = copy(openAPI.getSecurity());
+    fragment.extensions = copy(openAPI.getExtensions());
+    return fragment;
+  }
+
+  /**
+   * Returns the paths of the fragment.
+   *
+   * @return an unmodifiable view of the paths, by path
+   */
+  public Map<String, PathItem> getPaths() {
+    return paths;
+  }
+
+  /**
+   * Returns the component schemas of the fragment.
+   *
+   * @return an unmodifiable view of the schemas, by name
+   */
+  @SuppressWarnings("rawtypes")
+  public Map<String, Schema> getSchemas() {
+    return components.getSchemas() == null ? Collections.emptyMap() : components.getSchemas();
+  }
+
+  /**
+   * Returns the tags of the fragment.
+   *
+   * @return an unmodifiable view of the tags
+   */
+  public List<Tag> getTags() {
+    return tags;
+  }
+
+  /**
+   * Checks if the fragment has no content.
+   *
+   * @return true if the fragment has no paths, components, tags nor document values
+   */
+  public boolean isEmpty() {
+    return paths.isEmpty() && tags.isEmpty() && !hasComponents() && info == null && servers == null
+        && security == null && extensions == null;
+  }
+
+  /**
+   * Returns a fragment with a single operation of this fragment, together with the components it references, directly
+   * or through other components, the security schemes it requires and its tags.
+   * <p>
+   * The path item of the result only keeps the given operation and the values shared by every operation of the path.
+   * References to components that are not part of this fragment are left unresolved.
+   *
+   * @param path
+   *     the path of the operation
+   * @param method
+   *     the HTTP method of the operation
+   * @return the fragment with the operation, or null if this fragment does not define it
+   */
+  public OpenAPIFragment extractOperation(String path, PathItem.HttpMethod method) {
+    PathItem pathItem = paths.get(path);
+    Operation operation = pathItem == null ? null : pathItem.readOperationsMap().get(method);
+    if (operation == null) {
+      return null;
+    }
+    PathItem single = new PathItem()
+        .summary(pathItem.getSummary())
+        .description(pathItem.getDescription())
+        .servers(pathItem.getServers())
+        .parameters(pathItem.getParameters());
+    single.set$ref(pathItem.get$ref());
+    single.operation(method, operation);
+
+    Components referenced = new Components();
+    Set<String> visited = new HashSet<>();
+    Deque<JsonNode> pending = new ArrayDeque<>();
+    pending.add(OpenAPISerializer.toTree(single));
+    while (!pending.isEmpty()) {
+      List<String> refs = new ArrayList<>();
+      collectRefs(pending.poll(), refs);
+      for (String ref : refs) {
+        if (!visited.add(ref) || !ref.startsWith(COMPONENTS_REF_PREFIX)) {
+          continue;
+        }
+        String componentPath = ref.substring(COMPONENTS_REF_PREFIX.length());
+        String type = StringUtils.substringBefore(componentPath, "/");
+        String name = StringUtils.substringAfter(componentPath, "/");
+        Object component = getComponent(components, type, name);
+        if (component != null) {
+          addComponent(referenced, type, name, component);
+          pending.add(OpenAPISerializer.toTree(component));
+        }
+      }
+    }
+    if (operation.getSecurity() != null && components.getSecuritySchemes() != null) {
+      for (SecurityRequirement requirement : operation.getSecurity()) {
+        for (String scheme : requirement.keySet()) {
+          SecurityScheme securityScheme = components.getSecuritySchemes().get(scheme);
+          if (securityScheme != null) {
+            referenced.addSecuritySchemes(scheme, securityScheme);
+          }
+        }
+      }
+    }
+    List<Tag> operationTags = new ArrayList<>();
+    for (Tag tag : tags) {
+      if (operation.getTags() != null && operation.getTags().contains(tag.getName())) {
+        operationTags.add(tag);
+      }
+    }
+    return new OpenAPIFragment(Collections.singletonMap(path, single), referenced,
+        Collections.unmodifiableList(operationTags));
+  }
+
+  /**
+   * Adds the content of the fragment to the given document.
+   * <p>
+   * Components of the fragment replace those of the same name already present in the document, as they did when
+   * endpoints added them to the document directly, and the replacement of a different component is logged. Tags
+   * already present in the document are kept. Operations of a path already present in the document are added to it,
+   * replacing the operations of the same method.
+   * <p>
+   * The info and extensions of the fragment replace those of the document, while its servers and security
+   * requirements are appended to those of the document that are not equal.
+   *
+   * @param openAPI
+   *     the document to add the fragment to
+   */
+  public void mergeInto(OpenAPI openAPI) {
+    if (!paths.isEmpty()) {
+      if (openAPI.getPaths() == null) {
+        openAPI.setPaths(new Paths());
+      }
+      Paths target = openAPI.getPaths();
+      paths.forEach((path, pathItem) -> {
+        PathItem existing = target.get(path);
+        target.addPathItem(path, existing == null ? pathItem : mergePathItems(existing, pathItem));
+      });
+    }
+    if (hasComponents()) {
+      if (openAPI.getComponents() == null) {
+        openAPI.setComponents(new Components());
+      }
+      Components target = openAPI.getComponents();
+      target.setSchemas(merge(target.getSchemas(), components.getSchemas()));
+      target.setResponses(merge(target.getResponses(), components.getResponses()));
+      target.setParameters(merge(target.getParameters(), components.getParameters()));
+      target.setExamples(merge(target.getExamples(), components.getExamples()));
+      target.setRequestBodies(merge(target.getRequestBodies(), components.getRequestBodies()));
+      target.setHeaders(merge(target.getHeaders(), components.getHeaders()));
+      target.setSecuritySchemes(merge(target.getSecuritySchemes(), components.getSecuritySchemes()));
+      target.setLinks(merge(target.getLinks(), components.getLinks()));
+      target.setCallbacks(merge(target.getCallbacks(), components.getCallbacks()));
+    }
+    for (Tag tag : tags) {
+      if (openAPI.getTags() == null || openAPI.getTags().stream()
+          .noneMatch(existing -> existing.getName() != null && existing.getName().equals(tag.getName()))) {
+        openAPI.addTagsItem(tag);
+      }
+    }
+    mergeDocument(openAPI);
+  }
+
+  private void mergeDocument(OpenAPI openAPI) {
+    if (info != null) {
+      openAPI.setInfo(info);
+    }
+    if (servers != null) {
+      openAPI.setServers(union(openAPI.getServers(), servers));
+    }
+    if (security != null) {
+      openAPI.setSecurity(union(openAPI.getSecurity(), security));
+    }
+    if (extensions != null) {
+      extensions.forEach(openAPI::addExtension);
+    }
+  }
+
+  /**
+   * Returns a new list with the items of the target followed by the given ones it does not contain yet. The target
+   * list is not modified, as the document may hold an immutable list.
+   */
+  private static <T> List<T> union(List<T> target, List<T> items) {
+    List<T> result = target == null ? new ArrayList<>() : new ArrayList<>(target);
+    items.stream().filter(item -> !result.contains(item)).forEach(result::add);
+    return result;
+  }
+
+  private boolean hasComponents() {
+    return components.getSchemas() != null || components.getResponses() != null
+        || components.getParameters() != null || components.getExamples() != null
+        || components.getRequestBodies() != null || components.getHeaders() != null
+        || components.getSecuritySchemes() != null || components.getLinks() != null
+        || components.getCallbacks() != null;
+  }
+
+  /**
+   * Combines two path items into a new one, so neither of them is modified.
+   *
+   * @param existing
+   *     the path item already present in the document
+   * @param added
+   *     the path item of the fragment, whose values take precedence
+   * @return the combined path item
+   */
+  private static PathItem mergePathItems(PathItem existing, PathItem added) {
+    PathItem merged = new PathItem();
+    copyValue(existing, added, PathItem::getSummary, merged::setSummary);
+    copyValue(existing, added, PathItem::getDescription, merged::setDescription);
+    copyValue(existing, added, PathItem::getGet, merged::setGet);
+    copyValue(existing, added, PathItem::getPut, merged::setPut);
+    copyValue(existing, added, PathItem::getPost, merged::setPost);
+    copyValue(existing, added, PathItem::getDelete, merged::setDelete);
+    copyValue(existing, added, PathItem::getOptions, merged::setOptions);
+    copyValue(existing, added, PathItem::getHead, merged::setHead);
+    copyValue(existing, added, PathItem::getPatch, merged::setPatch);
+    copyValue(existing, added, PathItem::getTrace, merged::setTrace);
+    copyValue(existing, added, PathItem::getServers, merged::setServers);
+    copyValue(existing, added, PathItem::getParameters, merged::setParameters);
+    copyValue(existing, added, PathItem::get$ref, merged::set$ref);
+    copyValue(existing, added, PathItem::getExtensions, merged::setExtensions);
+    return merged;
+  }
+
+  private static <T> void copyValue(PathItem existing, PathItem added, Function<PathItem, T> getter,
+      Consumer<T> setter) {
+    T value = getter.apply(added);
+    setter.accept(value != null ? value : getter.apply(existing));
+  }
+
+  private static void collectRefs(JsonNode node, List<String> refs) {
+    if (node.isObject()) {
+      JsonNode ref = node.get("$ref");
+      if (ref != null && ref.isTextual()) {
+        refs.add(ref.asText());
+      }
+    }
+    for (JsonNode child : node) {
+      collectRefs(child, refs);
+    }
+  }
+
+  private static Object getComponent(Components source, String type, String name) {
+    Map<String, ?> map;
+    switch (type) {
+      case "schemas":
+        map = source.getSchemas();
+        break;
+      case "responses":
+        map = source.getResponses();
+        break;
+      case "parameters":
+        map = source.getParameters();
+        break;
+      case "examples":
+        map = source.getExamples();
+        break;
+      case "requestBodies":
+        map = source.getRequestBodies();
+        break;
+      case "headers":
+        map = source.getHeaders();
+        break;
+      case "securitySchemes":
+        map = source.getSecuritySchemes();
+        break;
+      case "links":
+        map = source.getLinks();
+        break;
+      case "callbacks":
+        map = source.getCallbacks();
+        break;
+      default:
+        map = null;
+    }
+    return map == null ? null : map.get(name);
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static void addComponent(Components target, String type, String name, Object component) {
+    switch (type) {
+      case "schemas":
+        target.addSchemas(name, (Schema) component);
+        break;
+      case "responses":
+        target.addResponses(name, (ApiResponse) component);
+        break;
+      case "parameters":
+        target.addParameters(name, (Parameter) component);
+        break;
+      case "examples":
+        target.addExamples(name, (Example) component);
+        break;
+      case "requestBodies":
+        target.addRequestBodies(name, (RequestBody) component);
+        break;
+      case "headers":
+        target.addHeaders(name, (Header) component);
+        break;
+      case "securitySchemes":
+        target.addSecuritySchemes(name, (SecurityScheme) component);
+        break;
+      case "links":
+        target.addLinks(name, (Link) component);
+        break;
+      case "callbacks":
+        target.addCallbacks(name, (Callback) component);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static <T> Map<String, T> copy(Map<String, T> source) {
+    if (source == null || source.isEmpty()) {
+      return null;
+    }
+    return Collections.unmodifiableMap(new LinkedHashMap<>(source));
+  }
+
+  private static <T> List<T> copy(List<T> source) {
+    if (source == null || source.isEmpty()) {
+      return null;
+    }
+    return Collections.unmodifiableList(new ArrayList<>(source));
+  }
+
+  private static <T> Map<String, T> merge(Map<String, T> target, Map<String, T> source) {
+    if (source == null) {
+      return target;
+    }
+    Map<String, T> result = target != null ? target : new LinkedHashMap<>();
+    source.forEach((name, component) -> {
+      T previous = result.put(name, component);
+      if (previous != null && previous != component && !previous.equals(component)) {
+        log.debug("OpenAPI component {} defined by several endpoints, keeping the last one", name);
+      }
+    });
+    return result;
+  }
+}
@@ -0,0 +1,106 @@
+package com.etendoerp.openapi.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+
+/**
+ * Index of the operations of the full specification, by operation id and by path and method, pointing to the
+ * {@link OpenAPIFragment} that defines each of them.
+ * <p>
+ * It is built from the fragments of the full specification when they are assembled, so looking up an operation does
+ * not require building nor parsing the whole specification. As in {@link OpenAPIFragment#mergeInto}, an operation
+ * defined by several fragments is taken from the last one.
+ */
+final class OperationIndex {
+
+  private final Map<String, Location> operationsById = new HashMap<>();
+  private final Map<String, Location> operationsByPath = new HashMap<>();
+
+  private OperationIndex() {
+  }
+
+  /**
+   * Indexes the operations of the given fragments.
+   *
+   * @param fragments
+   *     the fragments of the full specification, in registration order
+   * @return the index of their operations
+   */
+  static OperationIndex build(Collection<OpenAPIFragment> fragments) {
+    OperationIndex index = new OperationIndex();
+    for (OpenAPIFragment fragment : fragments) {
+      fragment.getPaths().forEach((path, pathItem) -> {
+        for (Map.Entry<PathItem.HttpMethod, Operation> entry : pathItem.readOperationsMap().entrySet()) {
+          Location location = new Location(fragment, path, entry.getKey());
+          index.operationsByPath.put(pathKey(path, entry.getKey()), location);
+          if (entry.getValue().getOperationId() != null) {
+            index.operationsById.put(entry.getValue().getOperationId(), location);
+          }
+        }
+      });
+    }
+    return index;
+  }
+
+  /**
+   * Returns the operation with the given operation id.
+   *
+   * @param operationId
+   *     the operation id
+   * @return the fragment with the operation, or null if there is no such operation
+   */
+  OpenAPIFragment find(String operationId) {
+    Location location = operationsById.get(operationId);
+    return location == null ? null : location.extract();
+  }
+
+  /**
+   * Returns the operation of the given path and method.
+   *
+   * @param path
+   *     the path of the operation
+   * @param method
+   *     the HTTP method of the operation
+   * @return the fragment with the operation, or null if there is no such operation
+   */
+  OpenAPIFragment find(String path, PathItem.HttpMethod method) {
+    Location location = operationsByPath.get(pathKey(path, method));
+    return location == null ? null : location.extract();
+  }
+
+  /**
+   * Returns the number of indexed operations.
+   *
+   * @return the number of operations
+   */
+  int size() {
+    return operationsByPath.size();
+  }
+
+  private static String pathKey(String path, PathItem.HttpMethod method) {
+    return method.name() + " " + path;
+  }
+
+  /**
+   * Fragment, path and method of an indexed operation.
+   */
+  private static class Location {
+    private final OpenAPIFragment fragment;
+    private final String path;
+    private final PathItem.HttpMethod method;
+
+    Location(OpenAPIFragment fragment, String path, PathItem.HttpMethod method) {
+      this.fragment = fragment;
+      this.path = path;
+      this.method = method;
+    }
+
+    OpenAPIFragment extract() {
+      return fragment.extractOperation(path, method);
+    }
+  }
+}
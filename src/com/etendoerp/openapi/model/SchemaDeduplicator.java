@@ -0,0 +1,252 @@
+package com.etendoerp.openapi.model;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.etendoerp.openapi.ContentHash;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Moves the schemas repeated in a specification into its components, replacing each copy with a reference.
+ * <p>
+ * Schemas are compared by structure: two schemas are the same when their JSON trees are equal, whatever the order of
+ * their fields. A repeated schema is moved only when the new component and its references take less space than the
+ * copies, and an inline schema equal to an existing component is replaced by a reference to it. The pass is repeated
+ * on the resulting document, so the schemas repeated inside the moved ones are moved too, until nothing changes.
+ * <p>
+ * The pass works on the JSON tree of the specification, so the models shared by the cached fragments are not
+ * modified.
+ */
+public final class SchemaDeduplicator {
+
+  private static final String REF = "$ref";
+  private static final String REF_PREFIX = "#/components/schemas/";
+  private static final int REF_OVERHEAD = "{\"$ref\":\"\"}".length() + REF_PREFIX.length();
+  private static final String DEFAULT_NAME = "Shared";
+  private static final int HASH_LENGTH = 8;
+  private static final int MAX_PASSES = 8;
+  private static final String[] SCHEMA_LISTS = { "allOf", "anyOf", "oneOf" };
+  private static final String[] HTTP_METHODS = { "get", "put", "post", "delete", "options", "head", "patch",
+      "trace" };
+
+  private SchemaDeduplicator() {
+  }
+
+  /**
+   * Moves the repeated schemas of the given specification into its components.
+   *
+   * @param document
+   *     the JSON tree of the specification, modified in place
+   * @return the same document
+   */
+  public static ObjectNode deduplicate(ObjectNode document) {
+    int pass = 0;
+    while (pass < MAX_PASSES && deduplicatePass(document)) {
+      pass++;
+    }
+    return document;
+  }
+
+  private static boolean deduplicatePass(ObjectNode document) {
+    JsonNode componentSchemas = document.path("components").path("schemas");
+    Map<JsonNode, String> existing = new HashMap<>();
+    Set<String> names = new HashSet<>();
+    componentSchemas.fields().forEachRemaining(entry -> {
+      existing.putIfAbsent(entry.getValue(), entry.getKey());
+      names.add(entry.getKey());
+    });
+
+    Map<JsonNode, Integer> counts = new HashMap<>();
+    walkDocument(document, schema -> {
+      counts.merge(schema, 1, Integer::sum);
+      return null;
+    });
+
+    Map<JsonNode, String> selected = new HashMap<>();
+    for (Map.Entry<JsonNode, Integer> entry : counts.entrySet()) {
+      JsonNode schema = entry.getKey();
+      int count = entry.getValue();
+      int size = schema.toString().length();
+      String name = existing.get(schema);
+      if (name != null) {
+        if (size > REF_OVERHEAD + name.length()) {
+          selected.put(schema, name);
+        }
+        continue;
+      }
+      if (count < 2) {
+        continue;
+      }
+      name = getName(schema, names);
+      int refSize = REF_OVERHEAD + name.length();
+      if ((long) count * size > size + (long) count * refSize + name.length() + 3) {
+        selected.put(schema, name);
+        names.add(name);
+      }
+    }
+    if (selected.isEmpty()) {
+      return false;
+    }
+
+    Map<String, JsonNode> added = new LinkedHashMap<>();
+    walkDocument(document, schema -> {
+      String name = selected.get(schema);
+      if (name == null) {
+        return null;
+      }
+      if (!existing.containsKey(schema)) {
+        added.putIfAbsent(name, schema);
+      }
+      return JsonNodeFactory.instance.objectNode().put(REF, REF_PREFIX + name);
+    });
+    if (!added.isEmpty()) {
+      ObjectNode components = getOrCreate(document, "components");
+      ObjectNode schemas = getOrCreate(components, "schemas");
+      added.forEach(schemas::set);
+    }
+    return true;
+  }
+
+  /**
+   * Returns a component name for a schema, made of its title, if any, and a hash of its content so the name is the
+   * same every time the specification is generated.
+   */
+  private static String getName(JsonNode schema, Set<String> names) {
+    String title = schema.path("title").asText("").replaceAll("[^A-Za-z0-9._-]", "");
+    String base = title.isEmpty() ? DEFAULT_NAME : title;
+    String hash = ContentHash.of(schema.toString());
+    String name = base + "_" + hash.substring(0, HASH_LENGTH);
+    return names.contains(name) ? base + "_" + hash : name;
+  }
+
+  private static ObjectNode getOrCreate(ObjectNode parent, String field) {
+    JsonNode node = parent.get(field);
+    if (node instanceof ObjectNode) {
+      return (ObjectNode) node;
+    }
+    return parent.putObject(field);
+  }
+
+  /**
+   * Visits the inline schemas of a document. The schemas of the components are not visited themselves, as they are
+   * referenced by name, but their children are.
+   */
+  private static void walkDocument(ObjectNode document, SchemaVisitor visitor) {
+    for (JsonNode pathItem : document.path("paths")) {
+      walkParameters(pathItem.get("parameters"), visitor);
+      for (String method : HTTP_METHODS) {
+        JsonNode operation = pathItem.get(method);
+        if (operation != null) {
+          walkParameters(operation.get("parameters"), visitor);
+          walkContent(operation.path("requestBody").get("content"), visitor);
+          walkResponses(operation.get("responses"), visitor);
+        }
+      }
+    }
+    JsonNode components = document.path("components");
+    for (JsonNode schema : components.path("schemas")) {
+      walkChildren(schema, visitor);
+    }
+    walkParameters(components.get("parameters"), visitor);
+    walkParameters(components.get("headers"), visitor);
+    for (JsonNode requestBody : components.path("requestBodies")) {
+      walkContent(requestBody.get("content"), visitor);
+    }
+    walkResponses(components.get("responses"), visitor);
+  }
+
+  private static void walkParameters(JsonNode parameters, SchemaVisitor visitor) {
+    if (parameters == null) {
+      return;
+    }
+    for (JsonNode parameter : parameters) {
+      walkSlot(parameter, "schema", visitor);
+      walkContent(parameter.get("content"), visitor);
+    }
+  }
+
+  private static void walkResponses(JsonNode responses, SchemaVisitor visitor) {
+    if (responses == null) {
+      return;
+    }
+    for (JsonNode response : responses) {
+      walkContent(response.get("content"), visitor);
+      walkParameters(response.get("headers"), visitor);
+    }
+  }
+
+  private static void walkContent(JsonNode content, SchemaVisitor visitor) {
+    if (content == null) {
+      return;
+    }
+    for (JsonNode mediaType : content) {
+      walkSlot(mediaType, "schema", visitor);
+    }
+  }
+
+  private static void walkChildren(JsonNode schema, SchemaVisitor visitor) {
+    JsonNode properties = schema.get("properties");
+    if (properties instanceof ObjectNode) {
+      Iterator<String> fieldNames = properties.fieldNames();
+      while (fieldNames.hasNext()) {
+        walkSlot(properties, fieldNames.next(), visitor);
+      }
+    }
+    walkSlot(schema, "items", visitor);
+    walkSlot(schema, "additionalProperties", visitor);
+    walkSlot(schema, "not", visitor);
+    for (String list : SCHEMA_LISTS) {
+      JsonNode schemas = schema.get(list);
+      if (schemas instanceof ArrayNode) {
+        ArrayNode array = (ArrayNode) schemas;
+        for (int i = 0; i < array.size(); i++) {
+          int index = i;
+          walkSchema(array.get(i), replacement -> array.set(index, replacement), visitor);
+        }
+      }
+    }
+  }
+
+  private static void walkSlot(JsonNode parent, String field, SchemaVisitor visitor) {
+    if (parent instanceof ObjectNode) {
+      ObjectNode object = (ObjectNode) parent;
+      walkSchema(object.get(field), replacement -> object.set(field, replacement), visitor);
+    }
+  }
+
+  private static void walkSchema(JsonNode schema, Consumer<JsonNode> setter, SchemaVisitor visitor) {
+    if (!(schema instanceof ObjectNode) || schema.has(REF)) {
+      return;
+    }
+    JsonNode replacement = visitor.visit((ObjectNode) schema);
+    if (replacement != null) {
+      setter.accept(replacement);
+    } else {
+      walkChildren(schema, visitor);
+    }
+  }
+
+  /**
+   * Visits an inline schema.
+   */
+  @FunctionalInterface
+  private interface SchemaVisitor {
+
+    /**
+     * Visits an inline schema, before its children.
+     *
+     * @param schema
+     *     the schema
+     * @return the node that replaces the schema, or null to keep it and visit its children
+     */
+    JsonNode visit(ObjectNode schema);
+  }
+}
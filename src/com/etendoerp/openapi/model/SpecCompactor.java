@@ -0,0 +1,75 @@
+package com.etendoerp.openapi.model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Removes the documentation meant for people from a specification, for the
+ * {@link com.etendoerp.openapi.cache.SpecProfile#COMPACT} profile.
+ * <p>
+ * The examples and descriptions of every object are removed, except the descriptions of responses, which are
+ * required by the OpenAPI specification. Names chosen by the endpoints, such as the properties of a schema or the
+ * paths, are kept even when they are called "description" or "example", and the servers block is kept as it is.
+ * <p>
+ * The compactor works on the JSON tree of the specification, so the models shared by the cached fragments are not
+ * modified.
+ */
+public final class SpecCompactor {
+
+  private static final String DESCRIPTION = "description";
+  private static final String RESPONSES = "responses";
+  private static final Set<String> EXAMPLE_FIELDS = new HashSet<>(Arrays.asList("example", "examples"));
+  private static final Set<String> VALUE_FIELDS = new HashSet<>(Arrays.asList("servers", "default", "enum", "const"));
+  private static final Set<String> NAMED_FIELDS = new HashSet<>(Arrays.asList("paths", "properties",
+      "patternProperties", "schemas", RESPONSES, "content", "headers", "parameters", "requestBodies",
+      "securitySchemes", "links", "callbacks", "encoding", "variables", "scopes", "mapping"));
+
+  private SpecCompactor() {
+  }
+
+  /**
+   * Removes the examples and descriptions of the given specification.
+   *
+   * @param document
+   *     the JSON tree of the specification, modified in place
+   * @return the same document
+   */
+  public static ObjectNode compact(ObjectNode document) {
+    compactObject(document, false);
+    return document;
+  }
+
+  private static void compactNode(JsonNode node, boolean keepDescription) {
+    if (node instanceof ObjectNode) {
+      compactObject((ObjectNode) node, keepDescription);
+    } else if (node.isArray()) {
+      for (JsonNode element : node) {
+        compactNode(element, false);
+      }
+    }
+  }
+
+  private static void compactObject(ObjectNode object, boolean keepDescription) {
+    Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      String name = field.getKey();
+      if (EXAMPLE_FIELDS.contains(name) || (!keepDescription && DESCRIPTION.equals(name))) {
+        fields.remove();
+      } else if (NAMED_FIELDS.contains(name) && field.getValue() instanceof ObjectNode) {
+        boolean responses = RESPONSES.equals(name);
+        for (JsonNode entry : field.getValue()) {
+          compactNode(entry, responses);
+        }
+      } else if (!VALUE_FIELDS.contains(name)) {
+        compactNode(field.getValue(), false);
+      }
+    }
+  }
+}
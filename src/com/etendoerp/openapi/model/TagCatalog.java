@@ -0,0 +1,145 @@
+package com.etendoerp.openapi.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+import com.etendoerp.openapi.ContentHash;
+import com.etendoerp.openapi.OpenAPISerializer;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.tags.Tag;
+
+/**
+ * Summary of the tags of the full specification: for each tag, its description, the number of operations it groups
+ * and a hash of their content.
+ * <p>
+ * The catalog lets clients list the tags without downloading the whole specification and fetch the specification of
+ * a tag only when it is needed. The hash covers the description and each operation together with the components it
+ * references, so it changes whenever the specification of the tag does.
+ */
+public final class TagCatalog {
+
+  private final List<Entry> tags;
+
+  private TagCatalog(List<Entry> tags) {
+    this.tags = tags;
+  }
+
+  /**
+   * Builds the catalog of the tags defined or used by the given fragments.
+   *
+   * @param fragments
+   *     the fragments of the full specification, in registration order
+   * @return the catalog of their tags, in order of appearance
+   */
+  public static TagCatalog build(Collection<OpenAPIFragment> fragments) {
+    Map<String, Builder> builders = new LinkedHashMap<>();
+    for (OpenAPIFragment fragment : fragments) {
+      for (Tag tag : fragment.getTags()) {
+        if (tag.getName() != null) {
+          Builder builder = builders.computeIfAbsent(tag.getName(), Builder::new);
+          if (builder.description == null) {
+            builder.description = tag.getDescription();
+          }
+        }
+      }
+      fragment.getPaths().forEach((path, pathItem) -> {
+        for (Map.Entry<PathItem.HttpMethod, Operation> entry : pathItem.readOperationsMap().entrySet()) {
+          List<String> operationTags = entry.getValue().getTags();
+          if (operationTags == null || operationTags.isEmpty()) {
+            continue;
+          }
+          OpenAPI resolved = new OpenAPI();
+          fragment.extractOperation(path, entry.getKey()).mergeInto(resolved);
+          byte[] content = OpenAPISerializer.toTree(resolved).toString().getBytes(StandardCharsets.UTF_8);
+          for (String operationTag : operationTags) {
+            builders.computeIfAbsent(operationTag, Builder::new).addOperation(content);
+          }
+        }
+      });
+    }
+    List<Entry> entries = new ArrayList<>(builders.size());
+    for (Builder builder : builders.values()) {
+      entries.add(builder.build());
+    }
+    return new TagCatalog(Collections.unmodifiableList(entries));
+  }
+
+  /**
+   * Returns the tags of the catalog.
+   *
+   * @return an unmodifiable list of the tags, in order of appearance
+   */
+  public List<Entry> getTags() {
+    return tags;
+  }
+
+  /**
+   * Summary of a tag.
+   */
+  public static final class Entry {
+    private final String name;
+    private final String description;
+    private final int operationCount;
+    private final String hash;
+
+    Entry(String name, String description, int operationCount, String hash) {
+      this.name = name;
+      this.description = description;
+      this.operationCount = operationCount;
+      this.hash = hash;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    public int getOperationCount() {
+      return operationCount;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+  }
+
+  /**
+   * Accumulates the operations of a tag while the catalog is built.
+   */
+  private static class Builder {
+    private final String name;
+    private final MessageDigest digest;
+    private String description;
+    private int operationCount;
+
+    Builder(String name) {
+      this.name = name;
+      this.digest = ContentHash.newDigest();
+    }
+
+    void addOperation(byte[] content) {
+      digest.update(content);
+      operationCount++;
+    }
+
+    Entry build() {
+      if (description != null) {
+        digest.update(description.getBytes(StandardCharsets.UTF_8));
+      }
+      return new Entry(name, description, operationCount, ContentHash.of(digest));
+    }
+  }
+}
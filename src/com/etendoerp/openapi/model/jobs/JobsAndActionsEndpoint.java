@@ -18,6 +18,7 @@ import org.apache.commons.lang3.StringUtils;
 import javax.enterprise.context.ApplicationScoped;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
@@ -36,6 +37,11 @@ public class JobsAndActionsEndpoint implements OpenAPIEndpoint {
     return tags.contains(tag);
   }
 
+  @Override
+  public Collection<String> getSupportedTags() {
+    return tags;
+  }
+
   @Override
   public void add(OpenAPI openAPI) {
     Schema<?> processOrdersDefaultsRequestSchema = defineProcessOrdersDefaultsRequestSchema();
@@ -16,6 +16,7 @@ import io.swagger.v3.oas.models.responses.ApiResponses;
 import javax.enterprise.context.ApplicationScoped;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
@@ -35,6 +36,11 @@ public class WindowSettingEndpoint implements OpenAPIEndpoint {
     return tags.contains(tag);
   }
 
+  @Override
+  public Collection<String> getSupportedTags() {
+    return tags;
+  }
+
   @Override
   public void add(OpenAPI openAPI) {
     Schema<?> windowSettingsResponseSchema = defineWindowSettingsResponseSchema();
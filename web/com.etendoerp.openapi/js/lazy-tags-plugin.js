@@ -0,0 +1,97 @@
+/**
+ * Swagger UI plugin that lists the tags of the tag catalog served by the OpenAPI controller and loads the
+ * specification of each tag the first time it is expanded, so the page does not download the whole specification.
+ */
+window.EtapiLazyTagsPlugin = function(apiUrl) {
+  const loadedTags = {};
+
+  function mergeComponents(type, current, added, tag) {
+    const merged = Object.assign({}, current);
+    Object.keys(added || {}).forEach(name => {
+      if (!(name in merged)) {
+        merged[name] = added[name];
+      } else if (JSON.stringify(merged[name]) !== JSON.stringify(added[name])) {
+        console.warn(`Component ${type}/${name} of tag ${tag} conflicts with the loaded one, keeping the loaded one`);
+      }
+    });
+    return merged;
+  }
+
+  function mergeSpec(current, tagSpec, tag) {
+    const merged = Object.assign({}, current);
+    ['info', 'externalDocs', 'servers', 'security'].forEach(key => {
+      if (tagSpec[key]) {
+        merged[key] = tagSpec[key];
+      }
+    });
+    merged.paths = Object.assign({}, current.paths);
+    Object.keys(tagSpec.paths || {}).forEach(path => {
+      merged.paths[path] = Object.assign({}, merged.paths[path], tagSpec.paths[path]);
+    });
+    merged.components = Object.assign({}, current.components);
+    Object.keys(tagSpec.components || {}).forEach(type => {
+      merged.components[type] = mergeComponents(type, merged.components[type], tagSpec.components[type], tag);
+    });
+    const knownTags = new Set((current.tags || []).map(tag => tag.name));
+    merged.tags = (current.tags || []).concat((tagSpec.tags || []).filter(tag => !knownTags.has(tag.name)));
+    return merged;
+  }
+
+  function loadTag(system, tag) {
+    if (loadedTags[tag]) {
+      return;
+    }
+    loadedTags[tag] = true;
+    fetch(`${apiUrl}?tag=${encodeURIComponent(tag)}`, { headers: { Accept: 'application/json' } })
+      .then(response => {
+        if (!response.ok) {
+          throw new Error(response.statusText);
+        }
+        return response.json();
+      })
+      .then(tagSpec => {
+        const current = system.specSelectors.specJson().toJS();
+        system.specActions.updateJsonSpec(mergeSpec(current, tagSpec, tag));
+      })
+      .catch(error => {
+        loadedTags[tag] = false;
+        console.error(`Error loading the OpenAPI specification of tag ${tag}`, error);
+      });
+  }
+
+  return function() {
+    return {
+      statePlugins: {
+        layout: {
+          wrapActions: {
+            show: (oriAction, system) => (thing, shown) => {
+              const key = thing && typeof thing.toJS === 'function' ? thing.toJS() : thing;
+              if (shown && Array.isArray(key) && key[0] === 'operations-tag') {
+                loadTag(system, key[1]);
+              }
+              return oriAction(thing, shown);
+            }
+          }
+        }
+      }
+    };
+  };
+};
+
+/**
+ * Builds the initial specification shown by the plugin: the tags of the catalog without any operation, with the
+ * common security schemes of the catalog so the authorization can be set before loading a tag.
+ */
+window.EtapiLazyTagsPlugin.initialSpec = function(catalog) {
+  return {
+    openapi: '3.0.1',
+    info: { title: 'Etendo API Headless', version: '1.0.0' },
+    paths: {},
+    components: { securitySchemes: (catalog.components || {}).securitySchemes || {} },
+    security: catalog.security || [],
+    tags: catalog.tags.map(tag => ({
+      name: tag.name,
+      description: `${tag.description ? tag.description + ' ' : ''}(${tag.operationCount} operations)`
+    }))
+  };
+};